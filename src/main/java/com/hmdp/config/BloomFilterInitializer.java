@@ -0,0 +1,68 @@
+package com.hmdp.config;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.baomidou.mybatisplus.extension.service.IService;
+import com.hmdp.service.IBlogService;
+import com.hmdp.service.IShopService;
+import com.hmdp.service.IUserService;
+import com.hmdp.utils.BloomFilters;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.util.List;
+import java.util.function.Function;
+
+import static com.hmdp.utils.RedisConstants.CACHE_BLOG_KEY;
+import static com.hmdp.utils.RedisConstants.CACHE_SHOP_KEY;
+import static com.hmdp.utils.RedisConstants.CACHE_USER_KEY;
+
+/**
+ * 启动时为店铺、笔记、用户注册布隆过滤器，redis中没有数据时从数据库全量构建
+ */
+@Slf4j
+@Component
+public class BloomFilterInitializer implements ApplicationRunner {
+
+    /**
+     * 重建时每次从数据库读取的id数量
+     */
+    private static final int ID_PAGE_SIZE = 10000;
+
+    @Resource
+    private BloomFilters bloomFilters;
+
+    @Resource
+    private IShopService shopService;
+
+    @Resource
+    private IBlogService blogService;
+
+    @Resource
+    private IUserService userService;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        register(CACHE_SHOP_KEY, shopService);
+        register(CACHE_BLOG_KEY, blogService);
+        register(CACHE_USER_KEY, userService);
+    }
+
+    private <T> void register(String keyPrefix, IService<T> service) {
+        try {
+            bloomFilters.register(keyPrefix, idPageLoader(service));
+        } catch (Exception e) {
+            // 加载失败时过滤器保持放行，不影响正常查询
+            log.error("布隆过滤器初始化失败, prefix: {}", keyPrefix, e);
+        }
+    }
+
+    private <T> Function<Long, List<Long>> idPageLoader(IService<T> service) {
+        // select id from tb_xxx where id > ? order by id limit ?
+        return lastId -> service.listObjs(
+                new QueryWrapper<T>().select("id").gt("id", lastId).orderByAsc("id").last("limit " + ID_PAGE_SIZE),
+                id -> ((Number) id).longValue());
+    }
+}
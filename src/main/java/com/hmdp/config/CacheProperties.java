@@ -0,0 +1,285 @@
+package com.hmdp.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 缓存相关配置，对应 application.yaml 中的 hmdp.cache
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "hmdp.cache")
+public class CacheProperties {
+
+    /**
+     * 进程内本地缓存（L1）
+     */
+    private Local local = new Local();
+
+    /**
+     * 写入缓存使用的编码：json（默认）或 binary，读取时两种格式都能识别
+     */
+    private String codec = "json";
+
+    /**
+     * 店铺缓存的保存方式：string（整个对象编码后保存）或 hash（每个字段一个field，列表只读取需要的字段，更新时只改变化的字段）
+     */
+    private String shopStorage = "string";
+
+    /**
+     * 互斥锁重建缓存时最多等待的时间，包括等待同实例其他线程和其他实例的锁
+     */
+    private Duration mutexWaitTimeout = Duration.ofSeconds(3);
+
+    /**
+     * 其他实例持有互斥锁时，重新查询redis的间隔
+     */
+    private Duration mutexRetryInterval = Duration.ofMillis(50);
+
+    /**
+     * 防止缓存穿透的布隆过滤器
+     */
+    private Bloom bloom = new Bloom();
+
+    /**
+     * 逻辑过期缓存的提前刷新
+     */
+    private EarlyRefresh earlyRefresh = new EarlyRefresh();
+
+    /**
+     * 异步重建缓存的线程池
+     */
+    private Rebuild rebuild = new Rebuild();
+
+    /**
+     * 热点key探测和本地提升
+     */
+    private HotKey hotKey = new HotKey();
+
+    /**
+     * 启动时的缓存预热
+     */
+    private WarmUp warmUp = new WarmUp();
+
+    /**
+     * 写入时过期时间的调整策略
+     */
+    private Ttl ttl = new Ttl();
+
+    /**
+     * 较大的缓存值压缩后写入redis
+     */
+    private Compression compression = new Compression();
+
+    @Data
+    public static class Local {
+        /**
+         * 是否开启本地缓存
+         */
+        private boolean enabled = true;
+        /**
+         * 按key前缀配置的本地缓存，未配置的前缀直接走redis
+         */
+        private List<Spec> specs = new ArrayList<>();
+    }
+
+    @Data
+    public static class Spec {
+        /**
+         * key前缀，例如 cache:shop:
+         */
+        private String prefix;
+        /**
+         * 共用这个本地缓存的其他key前缀，例如同一份数据的另一种存储方式 cache:shop:hash:
+         */
+        private List<String> aliases = new ArrayList<>();
+        /**
+         * 最多缓存的key数量，超出后按LRU淘汰
+         */
+        private int maximumSize = 1000;
+        /**
+         * 写入后的存活时间，兜底pub/sub消息丢失时的不一致
+         */
+        private Duration ttl = Duration.ofSeconds(60);
+    }
+
+    @Data
+    public static class Bloom {
+        /**
+         * 是否开启布隆过滤器
+         */
+        private boolean enabled = true;
+        /**
+         * 检查redis中版本号的间隔，和本地副本不一致（丢失了广播消息）时才整体加载bitmap
+         */
+        private Duration reloadInterval = Duration.ofSeconds(60);
+        /**
+         * 按key前缀配置的过滤器
+         */
+        private List<BloomSpec> filters = new ArrayList<>();
+    }
+
+    @Data
+    public static class BloomSpec {
+        /**
+         * 对应的缓存key前缀，例如 cache:shop:
+         */
+        private String prefix;
+        /**
+         * 共用这个过滤器的其他key前缀，id集合相同，例如同一份数据的另一种存储方式 cache:shop:hash:
+         */
+        private List<String> aliases = new ArrayList<>();
+        /**
+         * 预计的元素数量
+         */
+        private long expectedInsertions = 1000000;
+        /**
+         * 期望的误判率
+         */
+        private double fpp = 0.01;
+    }
+
+    @Data
+    public static class EarlyRefresh {
+        /**
+         * 是否开启，关闭后只在逻辑过期之后才重建
+         */
+        private boolean enabled = true;
+        /**
+         * 大于1时更早刷新，小于1时更晚刷新
+         */
+        private double beta = 1.0;
+        /**
+         * 缓存中没有记录重建耗时时使用的默认值
+         */
+        private Duration defaultRebuildCost = Duration.ofMillis(50);
+    }
+
+    @Data
+    public static class Rebuild {
+        /**
+         * 重建线程数
+         */
+        private int threads = 10;
+        /**
+         * 等待队列长度，满了之后新的重建请求直接放弃，继续返回旧数据
+         */
+        private int queueCapacity = 1000;
+    }
+
+    @Data
+    public static class HotKey {
+        /**
+         * 是否开启热点key探测
+         */
+        private boolean enabled = true;
+        /**
+         * 采样比例，1表示每次读取都计数
+         */
+        private double sampleRate = 0.1;
+        /**
+         * 统计窗口，以及窗口分成的桶数，每过一个桶的时间重新计算一次热点
+         */
+        private Duration window = Duration.ofSeconds(10);
+        private int buckets = 10;
+        /**
+         * count-min sketch的哈希函数个数和每行的计数器个数
+         */
+        private int depth = 4;
+        private int width = 4096;
+        /**
+         * 窗口内的访问次数达到该值才算热点
+         */
+        private long threshold = 1000;
+        /**
+         * 最多同时存在的热点key数量
+         */
+        private int topK = 20;
+        /**
+         * 热点key在本地缓存的存活时间，也是和redis之间最大的不一致时间
+         */
+        private Duration localTtl = Duration.ofSeconds(1);
+    }
+
+    @Data
+    public static class WarmUp {
+        /**
+         * 是否在启动时预热，关闭后仍然可以通过运维接口手动预热
+         */
+        private boolean enabled = true;
+        /**
+         * 每批从数据库读取并写入redis的数量
+         */
+        private int chunkSize = 1000;
+        /**
+         * 同时序列化和写入的批次数
+         */
+        private int parallelism = 4;
+    }
+
+    @Data
+    public static class Ttl {
+        /**
+         * 随机抖动的比例，0.1表示在原过期时间的±10%内随机，0表示不抖动
+         */
+        private double jitter = 0.1;
+        /**
+         * 按访问频率调整过期时间
+         */
+        private Adaptive adaptive = new Adaptive();
+    }
+
+    @Data
+    public static class Adaptive {
+        /**
+         * 是否开启
+         */
+        private boolean enabled = true;
+        /**
+         * 统计访问次数的窗口，以及窗口分成的桶数
+         */
+        private Duration window = Duration.ofMinutes(10);
+        private int buckets = 2;
+        /**
+         * count-min sketch的哈希函数个数和每行的计数器个数，key越多需要越大
+         */
+        private int depth = 4;
+        private int width = 65536;
+        /**
+         * 窗口内访问次数达到hotCount的key，过期时间乘以maxFactor
+         */
+        private long hotCount = 100;
+        private double maxFactor = 2.0;
+        /**
+         * 窗口内访问次数小于coldCount的key，过期时间乘以minFactor；
+         * 启动后的第一个窗口内、以及第一次访问后不满一个窗口的key没有完整的统计，不缩短
+         */
+        private long coldCount = 3;
+        private double minFactor = 0.5;
+        /**
+         * 最多记录多少个不满一个窗口的新key，超出后按LRU淘汰，被淘汰的key按已有完整统计处理
+         */
+        private int maxFreshKeys = 65536;
+    }
+
+    @Data
+    public static class Compression {
+        /**
+         * 是否压缩，关闭后已压缩的数据仍然可以读取
+         */
+        private boolean enabled = true;
+        /**
+         * 编码后超过该字节数才压缩
+         */
+        private int threshold = 1024;
+        /**
+         * Deflate压缩级别，1最快，9压缩率最高
+         */
+        private int level = 1;
+    }
+}
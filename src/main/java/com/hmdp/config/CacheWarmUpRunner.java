@@ -0,0 +1,37 @@
+package com.hmdp.config;
+
+import com.hmdp.service.IShopService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+
+/**
+ * 启动时预热店铺缓存和geo索引
+ * 在ApplicationRunner中同步执行，预热完成后spring才会把应用标记为ready（ReadinessState.ACCEPTING_TRAFFIC）
+ */
+@Slf4j
+@Component
+public class CacheWarmUpRunner implements ApplicationRunner {
+
+    @Resource
+    private IShopService shopService;
+
+    @Resource
+    private CacheProperties cacheProperties;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!cacheProperties.getWarmUp().isEnabled()) {
+            return;
+        }
+        try {
+            shopService.warmUpCache();
+        } catch (Exception e) {
+            // 预热失败不阻止启动，未预热的key按原有逻辑查询，可以通过运维接口重新预热
+            log.error("启动时缓存预热失败", e);
+        }
+    }
+}
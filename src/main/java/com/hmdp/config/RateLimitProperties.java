@@ -0,0 +1,33 @@
+package com.hmdp.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 接口限流配置，对应 application.yaml 中的 hmdp.rate-limit
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "hmdp.rate-limit")
+public class RateLimitProperties {
+
+    /**
+     * 关闭后@RateLimit不生效
+     */
+    private boolean enabled = true;
+
+    /**
+     * 本地令牌桶的最大数量，按用户、ip限流时每个用户、ip一个，超过后淘汰最久没有使用的
+     */
+    private int localBuckets = 10000;
+
+    /**
+     * 可信代理（nginx等）的地址，请求直连地址在其中时才按X-Forwarded-For取客户端ip，需要和getRemoteAddr()完全相同
+     */
+    private List<String> trustedProxies = new ArrayList<>(Arrays.asList("127.0.0.1", "0:0:0:0:0:0:0:1"));
+}
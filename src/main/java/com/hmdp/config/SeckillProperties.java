@@ -0,0 +1,105 @@
+package com.hmdp.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * 秒杀相关配置，对应 application.yaml 中的 hmdp.seckill
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "hmdp.seckill")
+public class SeckillProperties {
+
+    /**
+     * 每个实例消费stream.orders的消费者（线程）数，第i个消费者读取第 i % streams 个stream
+     */
+    private int consumers = 4;
+
+    /**
+     * 消费者名称前缀，为空时使用 主机名-进程号，实际名称为 前缀-序号
+     * 容器中重启后希望保持同一个名称（继续处理自己的pending-list）时可以配置成固定的实例名
+     */
+    private String consumerPrefix;
+
+    /**
+     * 每次XREADGROUP读取的最大消息数，同一批在一个事务中批量写入数据库
+     */
+    private int batchSize = 16;
+
+    /**
+     * 新增秒杀券时库存拆分的段数，1表示不拆分，已创建的秒杀券不受影响
+     */
+    private int stockSegments = 1;
+
+    /**
+     * 订单stream的数量（分片数，最多256），秒杀的key按分片带上hash tag，集群中分散到不同slot，见SeckillSegments
+     * 为1时使用分片之前不带hash tag的key（stream.orders、seckill:stock:id），升级后已有数据不受影响
+     * 决定秒杀券的key在哪个分片，只能在没有未结束的秒杀券时修改（它们的库存、订单集合和元数据不会迁移），
+     * 从1改成多个时stream.orders中剩余的订单消息会继续消费；每个实例的消费者数不少于这个值
+     */
+    private int streams = 1;
+
+    /**
+     * 本地售罄标记超过这个时间后放过一个请求到redis重新判断，防止补充库存的通知丢失后一直拒绝
+     */
+    private Duration soldOutRecheck = Duration.ofSeconds(10);
+
+    /**
+     * 不存在的秒杀券id在本地缓存的时间，防止用随机id反复穿透到redis和数据库
+     */
+    private Duration missingVoucherTtl = Duration.ofSeconds(30);
+
+    private Recovery recovery = new Recovery();
+
+    private Trim trim = new Trim();
+
+    /**
+     * pending-list恢复
+     */
+    @Data
+    public static class Recovery {
+        /**
+         * 检查pending-list的间隔
+         */
+        private Duration interval = Duration.ofSeconds(5);
+        /**
+         * 空闲超过这个时间的消息才认领，认为原来的消费者已经失败或宕机
+         */
+        private Duration minIdle = Duration.ofSeconds(30);
+        /**
+         * 投递次数达到上限后移到死信stream
+         */
+        private int maxDeliveries = 5;
+        /**
+         * 每次XPENDING查询的数量
+         */
+        private int batchSize = 100;
+    }
+
+    /**
+     * stream.orders的裁剪和监控
+     */
+    @Data
+    public static class Trim {
+        /**
+         * minid：删除消费者组已经处理完的消息；maxlen：只保留最近max-len条左右；none：不裁剪
+         */
+        private String strategy = "minid";
+        /**
+         * maxlen时保留的消息数
+         */
+        private long maxLen = 1000000;
+        /**
+         * minid时至少保留这段时间内的消息，方便排查问题
+         */
+        private Duration retention = Duration.ofHours(1);
+        /**
+         * 裁剪和更新积压指标的间隔
+         */
+        private Duration interval = Duration.ofSeconds(30);
+    }
+}
@@ -6,8 +6,11 @@ import com.hmdp.dto.Result;
 import com.hmdp.dto.UserDTO;
 import com.hmdp.entity.Blog;
 import com.hmdp.service.IBlogService;
+import com.hmdp.utils.CachedBody;
 import com.hmdp.utils.SystemConstants;
 import com.hmdp.utils.UserHolder;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import javax.annotation.Resource;
@@ -59,8 +62,10 @@ public class BlogController {
     }
 
     @GetMapping("/{id}")
-    public Result queryBlogById(@PathVariable("id")Long id){
-        return blogService.queryBlogById(id);
+    public ResponseEntity<byte[]> queryBlogById(@PathVariable("id")Long id){
+        // 直接返回缓存的响应体，请求头If-None-Match和ETag相同时由spring返回304
+        CachedBody body = blogService.queryBodyById(id);
+        return ResponseEntity.ok().eTag(body.getEtag()).contentType(MediaType.APPLICATION_JSON).body(body.getBody());
     }
 
     @GetMapping("/likes/{id}")
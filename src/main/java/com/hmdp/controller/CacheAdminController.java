@@ -0,0 +1,144 @@
+package com.hmdp.controller;
+
+import com.hmdp.dto.Result;
+import com.hmdp.service.IShopService;
+import com.hmdp.service.IShopTypeService;
+import com.hmdp.utils.BloomFilters;
+import com.hmdp.utils.CacheClient;
+import com.hmdp.utils.HotKeyDetector;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.bind.annotation.*;
+
+import javax.annotation.Resource;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * <p>
+ * 缓存运维接口
+ * </p>
+ */
+@Slf4j
+@RestController
+@RequestMapping("/admin/cache")
+public class CacheAdminController {
+
+    @Resource
+    private CacheClient cacheClient;
+
+    @Resource
+    private BloomFilters bloomFilters;
+
+    @Resource
+    private HotKeyDetector hotKeyDetector;
+
+    @Resource
+    private IShopService shopService;
+
+    @Resource
+    private IShopTypeService shopTypeService;
+
+    /**
+     * 查询各key前缀的本地缓存、redis命中统计
+     * @return 统计数据
+     */
+    @GetMapping("/stats")
+    public Result stats() {
+        return Result.ok(cacheClient.stats());
+    }
+
+    /**
+     * 查询缓存重建时请求合并的统计
+     * @return 统计数据
+     */
+    @GetMapping("/single-flight")
+    public Result singleFlightStats() {
+        return Result.ok(cacheClient.singleFlightStats());
+    }
+
+    /**
+     * 查询各key前缀的压缩率和压缩、解压耗时，用于调整压缩阈值
+     * @return 统计数据
+     */
+    @GetMapping("/compression")
+    public Result compressionStats() {
+        return Result.ok(cacheClient.compressionStats());
+    }
+
+    /**
+     * 查询异步重建的队列长度、耗时和失败次数
+     * @return 统计数据
+     */
+    @GetMapping("/rebuild")
+    public Result rebuildStats() {
+        return Result.ok(cacheClient.rebuildStats());
+    }
+
+    /**
+     * 查询当前的热点key
+     * @return 热点key列表，本实例探测到的带估算访问次数
+     */
+    @GetMapping("/hot-keys")
+    public Result hotKeys() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("keys", hotKeyDetector.hotKeys());
+        map.put("localHit", hotKeyDetector.localHitCount());
+        return Result.ok(map);
+    }
+
+    /**
+     * 查询布隆过滤器的内存占用和误判率
+     * @return 统计数据
+     */
+    @GetMapping("/bloom")
+    public Result bloomStats() {
+        return Result.ok(bloomFilters.stats());
+    }
+
+    /**
+     * 从数据库全量重建布隆过滤器
+     * @param prefix 缓存key前缀，例如 cache:shop:
+     * @return 无
+     */
+    @PostMapping("/bloom/rebuild")
+    public Result rebuildBloom(@RequestParam("prefix") String prefix) {
+        bloomFilters.rebuild(prefix);
+        return Result.ok();
+    }
+
+    /**
+     * 后台全量预热店铺缓存和geo索引
+     * @return 已经有预热在执行时返回错误
+     */
+    @PostMapping("/warm-up")
+    public Result warmUp() {
+        if (shopService.warmUpProgress().get("status").equals("RUNNING")) {
+            return Result.fail("预热正在执行");
+        }
+        CompletableFuture.runAsync(shopService::warmUpCache).whenComplete((r, e) -> {
+            if (e != null) {
+                log.error("手动缓存预热失败", e);
+            }
+        });
+        return Result.ok();
+    }
+
+    /**
+     * 查询最近一次预热的进度和吞吐量
+     * @return 进度
+     */
+    @GetMapping("/warm-up")
+    public Result warmUpProgress() {
+        return Result.ok(shopService.warmUpProgress());
+    }
+
+    /**
+     * 直接修改tb_shop_type后调用，所有实例重新加载店铺类型快照
+     * @return 新的版本号
+     */
+    @PostMapping("/shop-type/refresh")
+    public Result refreshShopType() {
+        return Result.ok(shopTypeService.refreshTypeList());
+    }
+}
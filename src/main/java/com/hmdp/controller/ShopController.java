@@ -6,11 +6,17 @@ import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.hmdp.dto.Result;
 import com.hmdp.entity.Shop;
 import com.hmdp.service.IShopService;
+import com.hmdp.utils.BloomFilters;
+import com.hmdp.utils.CachedBody;
 import com.hmdp.utils.SystemConstants;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import javax.annotation.Resource;
 
+import static com.hmdp.utils.RedisConstants.CACHE_SHOP_KEY;
+
 /**
  * <p>
  * 前端控制器
@@ -26,14 +32,19 @@ public class ShopController {
     @Resource
     public IShopService shopService;
 
+    @Resource
+    private BloomFilters bloomFilters;
+
     /**
      * 根据id查询商铺信息
      * @param id 商铺id
      * @return 商铺详情数据
      */
     @GetMapping("/{id}")
-    public Result queryShopById(@PathVariable("id") Long id) {
-        return shopService.queryById(id);
+    public ResponseEntity<byte[]> queryShopById(@PathVariable("id") Long id) {
+        // 直接返回缓存的响应体，请求头If-None-Match和ETag相同时由spring返回304
+        CachedBody body = shopService.queryBodyById(id);
+        return ResponseEntity.ok().eTag(body.getEtag()).contentType(MediaType.APPLICATION_JSON).body(body.getBody());
     }
 
     /**
@@ -45,6 +56,8 @@ public class ShopController {
     public Result saveShop(@RequestBody Shop shop) {
         // 写入数据库
         shopService.save(shop);
+        // 加入布隆过滤器
+        bloomFilters.add(CACHE_SHOP_KEY, shop.getId());
         // 返回店铺id
         return Result.ok(shop.getId());
     }
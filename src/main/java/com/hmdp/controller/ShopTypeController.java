@@ -1,21 +1,14 @@
 package com.hmdp.controller;
 
-import cn.hutool.core.util.StrUtil;
-import cn.hutool.json.JSONUtil;
-import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
-import com.hmdp.dto.Result;
-import com.hmdp.entity.ShopType;
-import com.hmdp.mapper.ShopTypeMapper;
 import com.hmdp.service.IShopTypeService;
-import org.springframework.data.redis.core.StringRedisTemplate;
+import com.hmdp.utils.CachedBody;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
 import javax.annotation.Resource;
-import java.util.List;
-
-import static com.hmdp.utils.RedisConstants.CACHE_SHOPTYPE_KEY;
 
 /**
  * <p>
@@ -27,37 +20,15 @@ import static com.hmdp.utils.RedisConstants.CACHE_SHOPTYPE_KEY;
  */
 @RestController
 @RequestMapping("/shop-type")
-public class ShopTypeController extends ServiceImpl<ShopTypeMapper, ShopType> implements IShopTypeService {
-//    @Resource
-//    private IShopTypeService typeService;
+public class ShopTypeController {
     @Resource
-    private StringRedisTemplate stringRedisTemplate;
+    private IShopTypeService typeService;
 
     @GetMapping("list")
-    public Result queryTypeList() {
-//        List<ShopType> typeList = typeService
-//                .query().orderByAsc("sort").list();
-//        return Result.ok(typeList);
-
-        //1.从redis中查询店铺类型缓存
-        String shopType = stringRedisTemplate.opsForValue().get(CACHE_SHOPTYPE_KEY);
-        //2.判断是否为空
-        if (StrUtil.isNotBlank(shopType)) {
-            //3.存在，直接返回
-            List<ShopType> shopTypes = JSONUtil.toList(shopType, ShopType.class);
-            return Result.ok(shopTypes);
-        }
-        //4.不存在，从数据库中查询写入redis
-        List<ShopType> shopTypes = query().orderByAsc("sort").list();
-        //5.不存在，返回错误
-        if (shopTypes == null) {
-            return Result.fail("分类不存在");
-        }
-        //6.存在，写入redis
-        stringRedisTemplate.opsForValue().set(CACHE_SHOPTYPE_KEY,JSONUtil.toJsonStr(shopTypes));
-        //7.返回
-        return Result.ok(shopTypes);
-
+    public ResponseEntity<byte[]> queryTypeList() {
+        // 内存快照中序列化好的响应体，请求头If-None-Match和ETag相同时由spring返回304
+        CachedBody body = typeService.queryTypeListBody();
+        return ResponseEntity.ok().eTag(body.getEtag()).contentType(MediaType.APPLICATION_JSON).body(body.getBody());
     }
 
 }
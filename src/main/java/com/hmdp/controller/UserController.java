@@ -9,6 +9,8 @@ import com.hmdp.entity.User;
 import com.hmdp.entity.UserInfo;
 import com.hmdp.service.IUserInfoService;
 import com.hmdp.service.IUserService;
+import com.hmdp.utils.BloomFilters;
+import com.hmdp.utils.RateLimit;
 import com.hmdp.utils.UserHolder;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.web.bind.annotation.*;
@@ -16,6 +18,8 @@ import org.springframework.web.bind.annotation.*;
 import javax.annotation.Resource;
 import javax.servlet.http.HttpSession;
 
+import static com.hmdp.utils.RedisConstants.CACHE_USER_KEY;
+
 /**
  * <p>
  * 前端控制器
@@ -35,9 +39,13 @@ public class UserController {
     @Resource
     private IUserInfoService userInfoService;
 
+    @Resource
+    private BloomFilters bloomFilters;
+
     /**
      * 发送手机验证码
      */
+    @RateLimit(name = "code", scope = RateLimit.Scope.IP, rate = 0.2, capacity = 5, message = "发送验证码太频繁，请稍后再试")
     @PostMapping("code")
     public Result sendCode(@RequestParam("phone") String phone, HttpSession session) {
         // TODO 发送短信验证码并保存验证码
@@ -87,6 +95,10 @@ public class UserController {
 
     @GetMapping("/{id}")
     public Result queryUserById(@PathVariable("id") Long userId){
+        // 布隆过滤器判断不存在，直接返回
+        if (!bloomFilters.mightContain(CACHE_USER_KEY, userId)) {
+            return Result.ok();
+        }
         // 查询详情
         User user = userService.getById(userId);
         if (user == null) {
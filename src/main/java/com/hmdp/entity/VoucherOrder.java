@@ -42,6 +42,11 @@ public class VoucherOrder implements Serializable {
      */
     private Long voucherId;
 
+    /**
+     * 秒杀订单为1，普通订单为null，和user_id、voucher_id组成唯一索引，只限制秒杀券一人一单
+     */
+    private Integer seckill;
+
     /**
      * 支付方式 1：余额支付；2：支付宝；3：微信
      */
@@ -2,6 +2,9 @@ package com.hmdp.mapper;
 
 import com.hmdp.entity.VoucherOrder;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
 
 /**
  * <p>
@@ -13,4 +16,9 @@ import com.baomidou.mybatisplus.core.mapper.BaseMapper;
  */
 public interface VoucherOrderMapper extends BaseMapper<VoucherOrder> {
 
+    /**
+     * 一条多行insert ignore写入多个秒杀订单（seckill=1），主键或唯一索引(user_id, voucher_id, seckill)冲突的忽略
+     * @return 实际插入的数量
+     */
+    int insertIgnore(@Param("orders") List<VoucherOrder> orders);
 }
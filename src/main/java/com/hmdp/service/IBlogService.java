@@ -2,6 +2,7 @@ package com.hmdp.service;
 
 import com.hmdp.dto.Result;
 import com.hmdp.entity.Blog;
+import com.hmdp.utils.CachedBody;
 import com.baomidou.mybatisplus.extension.service.IService;
 
 /**
@@ -18,6 +19,11 @@ public interface IBlogService extends IService<Blog> {
 
     Result queryBlogById(Long id);
 
+    /**
+     * 查询笔记详情，返回序列化好的响应体和ETag，当前用户是否点赞直接合并到响应体中
+     */
+    CachedBody queryBodyById(Long id);
+
     Result likeBlog(Long id);
 
     Result queryBlogLikes(Long id);
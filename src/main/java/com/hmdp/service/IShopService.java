@@ -2,8 +2,11 @@ package com.hmdp.service;
 
 import com.hmdp.dto.Result;
 import com.hmdp.entity.Shop;
+import com.hmdp.utils.CachedBody;
 import com.baomidou.mybatisplus.extension.service.IService;
 
+import java.util.Map;
+
 /**
  * <p>
  *  服务类
@@ -16,7 +19,23 @@ public interface IShopService extends IService<Shop> {
 
     Result queryById(Long id);
 
+    /**
+     * 查询店铺详情，返回序列化好的响应体和ETag
+     */
+    CachedBody queryBodyById(Long id);
+
     Result update(Shop shop);
 
     Result queryShopByType(Integer typeId, Integer current, Double x, Double y);
+
+    /**
+     * 全量预热店铺缓存和geo索引
+     * @return 已经有预热在执行时返回false
+     */
+    boolean warmUpCache();
+
+    /**
+     * 最近一次预热的进度
+     */
+    Map<String, Object> warmUpProgress();
 }
@@ -2,6 +2,9 @@ package com.hmdp.service;
 
 import com.hmdp.entity.ShopType;
 import com.baomidou.mybatisplus.extension.service.IService;
+import com.hmdp.utils.CachedBody;
+
+import java.util.List;
 
 /**
  * <p>
@@ -13,4 +16,19 @@ import com.baomidou.mybatisplus.extension.service.IService;
  */
 public interface IShopTypeService extends IService<ShopType> {
 
+    /**
+     * 店铺类型列表，来自内存中的快照，不可修改
+     */
+    List<ShopType> queryTypeList();
+
+    /**
+     * 店铺类型列表序列化好的响应体和ETag
+     */
+    CachedBody queryTypeListBody();
+
+    /**
+     * tb_shop_type修改后调用：重新加载快照，版本号加1并通知所有实例
+     * @return 新的版本号
+     */
+    long refreshTypeList();
 }
@@ -17,4 +17,9 @@ public interface IVoucherService extends IService<Voucher> {
     Result queryVoucherOfShop(Long shopId);
 
     void addSeckillVoucher(Voucher voucher);
+
+    /**
+     * 补充秒杀券库存，按分段平均加到每段，并清除各实例的售罄标记
+     */
+    void addSeckillStock(Long voucherId, int count);
 }
@@ -14,6 +14,9 @@ import com.hmdp.service.IBlogService;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.hmdp.service.IFollowService;
 import com.hmdp.service.IUserService;
+import com.hmdp.utils.BloomFilters;
+import com.hmdp.utils.CachedBody;
+import com.hmdp.utils.ResponseBodyCache;
 import com.hmdp.utils.SystemConstants;
 import com.hmdp.utils.UserHolder;
 import org.springframework.data.redis.core.StringRedisTemplate;
@@ -25,9 +28,13 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import static com.hmdp.utils.RedisConstants.BLOG_LIKED_KEY;
+import static com.hmdp.utils.RedisConstants.CACHE_BLOG_BODY_KEY;
+import static com.hmdp.utils.RedisConstants.CACHE_BLOG_BODY_TTL;
+import static com.hmdp.utils.RedisConstants.CACHE_BLOG_KEY;
 import static com.hmdp.utils.RedisConstants.FEED_KEY;
 
 /**
@@ -41,6 +48,12 @@ import static com.hmdp.utils.RedisConstants.FEED_KEY;
 @Service
 public class BlogServiceImpl extends ServiceImpl<BlogMapper, Blog> implements IBlogService {
 
+    /**
+     * 缓存的响应体和用户无关，isLike统一为false，返回前按当前用户替换
+     */
+    private static final String IS_LIKE_FALSE = "\"isLike\":false";
+    private static final String IS_LIKE_TRUE = "\"isLike\":true";
+
     @Resource
     private IUserService userService;
 
@@ -50,6 +63,12 @@ public class BlogServiceImpl extends ServiceImpl<BlogMapper, Blog> implements IB
     @Resource
     private IFollowService followService;
 
+    @Resource
+    private BloomFilters bloomFilters;
+
+    @Resource
+    private ResponseBodyCache responseBodyCache;
+
     @Override
     public Result queryHotBlog(Integer current) {
         // 根据用户查询
@@ -68,18 +87,51 @@ public class BlogServiceImpl extends ServiceImpl<BlogMapper, Blog> implements IB
 
     @Override
     public Result queryBlogById(Long id) {
-//        查询blog
-        Blog blog = getById(id);
+        Blog blog = queryBlogDetail(id);
         if (blog == null){
             return Result.fail("笔记不存在");
         }
-//        查询blog相关用户
-        queryBlogUser(blog);
 //        查询此blog是否被用户点赞
         isBlogLiked(blog);
         return Result.ok(blog);
     }
 
+    @Override
+    public CachedBody queryBodyById(Long id) {
+        CachedBody body = responseBodyCache.get(CACHE_BLOG_BODY_KEY + id, () -> {
+            Blog blog = queryBlogDetail(id);
+            if (blog == null){
+                return Result.fail("笔记不存在");
+            }
+            blog.setIsLike(false);
+            return Result.ok(blog);
+        }, CACHE_BLOG_BODY_TTL, TimeUnit.MINUTES);
+//        合并当前用户是否点赞，只替换字节，不重新序列化
+        UserDTO user = UserHolder.getUser();
+        if (user != null && isLiked(id, user.getId())){
+            return body.replace(IS_LIKE_FALSE, IS_LIKE_TRUE, "liked");
+        }
+        return body;
+    }
+
+    /**
+     * 查询blog和作者信息，不包含和当前用户相关的字段
+     */
+    private Blog queryBlogDetail(Long id) {
+//        布隆过滤器判断不存在，直接返回
+        if (!bloomFilters.mightContain(CACHE_BLOG_KEY, id)){
+            return null;
+        }
+//        查询blog
+        Blog blog = getById(id);
+        if (blog == null){
+            return null;
+        }
+//        查询blog相关用户
+        queryBlogUser(blog);
+        return blog;
+    }
+
     private void isBlogLiked(Blog blog) {
         //        获取当前用户
         UserDTO user = UserHolder.getUser();
@@ -87,11 +139,13 @@ public class BlogServiceImpl extends ServiceImpl<BlogMapper, Blog> implements IB
 //            用户未登录
             return;
         }
-        Long userId = user.getId();
+        blog.setIsLike(isLiked(blog.getId(), user.getId()));
+    }
+
+    private boolean isLiked(Long blogId, Long userId) {
 //        判断当前用户是否已点赞
-        String key = BLOG_LIKED_KEY + blog.getId();
-        Double score = stringRedisTemplate.opsForZSet().score(key, userId.toString());
-        blog.setIsLike(score != null);
+        Double score = stringRedisTemplate.opsForZSet().score(BLOG_LIKED_KEY + blogId, userId.toString());
+        return score != null;
     }
 
     @Override
@@ -119,6 +173,8 @@ public class BlogServiceImpl extends ServiceImpl<BlogMapper, Blog> implements IB
                 stringRedisTemplate.opsForZSet().remove(key, userId.toString());
             }
         }
+//        点赞数变化，删除缓存的响应体
+        responseBodyCache.delete(CACHE_BLOG_BODY_KEY + id);
 
         return Result.ok();
 
@@ -156,6 +212,8 @@ public class BlogServiceImpl extends ServiceImpl<BlogMapper, Blog> implements IB
         if (!isSave){
             return Result.fail("新增笔记失败");
         }
+//        加入布隆过滤器
+        bloomFilters.add(CACHE_BLOG_KEY, blog.getId());
 //        获取作者的所有粉丝
         List<Follow> follows = followService.query().eq("follow_user_id", user.getId()).list();
 //        推送笔记id给所有粉丝
@@ -1,34 +1,41 @@
 package com.hmdp.service.impl;
 
-import cn.hutool.core.util.BooleanUtil;
-import cn.hutool.core.util.StrUtil;
-import cn.hutool.json.JSONObject;
-import cn.hutool.json.JSONUtil;
+import cn.hutool.core.bean.BeanUtil;
+import cn.hutool.core.thread.NamedThreadFactory;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.hmdp.dto.Result;
 import com.hmdp.entity.Shop;
 import com.hmdp.mapper.ShopMapper;
 import com.hmdp.service.IShopService;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
-import com.hmdp.utils.RedisData;
+import com.hmdp.config.CacheProperties;
+import com.hmdp.utils.CacheClient;
+import com.hmdp.utils.CachedBody;
+import com.hmdp.utils.ResponseBodyCache;
 import com.hmdp.utils.SystemConstants;
+import com.hmdp.utils.WarmUpProgress;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.geo.Distance;
 import org.springframework.data.geo.GeoResult;
 import org.springframework.data.geo.GeoResults;
+import org.springframework.data.geo.Point;
+import org.springframework.data.redis.connection.StringRedisConnection;
 import org.springframework.data.redis.connection.RedisGeoCommands;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.data.redis.domain.geo.GeoReference;
 import org.springframework.stereotype.Service;
 
 import javax.annotation.Resource;
 
-import java.time.LocalDateTime;
 import java.util.*;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static com.hmdp.utils.RedisConstants.*;
-import static java.util.concurrent.Executors.*;
 
 /**
  * <p>
@@ -38,12 +45,30 @@ import static java.util.concurrent.Executors.*;
  * @author 虎哥
  * @since 2021-12-22
  */
+@Slf4j
 @Service
 public class ShopServiceImpl extends ServiceImpl<ShopMapper, Shop> implements IShopService {
 
     @Resource
     private StringRedisTemplate stringRedisTemplate;
 
+    @Resource
+    private CacheClient cacheClient;
+
+    @Resource
+    private CacheProperties cacheProperties;
+
+    @Resource
+    private ResponseBodyCache responseBodyCache;
+
+    private final WarmUpProgress warmUpProgress = new WarmUpProgress();
+
+    /**
+     * 按hash保存时，店铺列表只读取这些字段
+     */
+    private static final List<String> SHOP_LIST_FIELDS = Arrays.asList(
+            "id", "name", "typeId", "images", "area", "address", "avgPrice", "sold", "comments", "score");
+
     @Override
     public Result queryById(Long id) {
 //        缓存穿透
@@ -62,136 +87,35 @@ public class ShopServiceImpl extends ServiceImpl<ShopMapper, Shop> implements IS
         return Result.ok(shop);
     }
 
-    public Shop queryWithLogicalExpire(Long id){
-        String key = CACHE_SHOP_KEY + id;
-//        从redis查询缓存
-        String shopJson = stringRedisTemplate.opsForValue().get(key);
-//        判断是否存在
-        if (StrUtil.isBlank(shopJson)){
-//            不存在 返回null
-            return null;
-        }
-//        存在则把json序列化为对象 判断是否过期
-        RedisData redisData = JSONUtil.toBean(shopJson, RedisData.class);
-        Shop shop = JSONUtil.toBean((JSONObject) redisData.getData(), Shop.class);
-        LocalDateTime expireTime = redisData.getExpireTime();
-//        未过期则直接返回信息
-        if (expireTime.isAfter(LocalDateTime.now())){
-            return shop;
-        }
-//        过期，进行缓存重建
-//        获取互斥锁
-        String lockKey = LOCK_SHOP_KEY + id;
-        boolean isLock = tryLock(lockKey);
-//        判断是否获取成功
-        if (isLock){
-            //        获取成功，开启独立线程
+    @Override
+    public CachedBody queryBodyById(Long id) {
+        return responseBodyCache.get(CACHE_SHOP_BODY_KEY + id, () -> queryById(id), CACHE_SHOP_TTL, TimeUnit.MINUTES);
+    }
 
-            try {
-                CACHE_REBUILD_EXECUTOR.submit(() -> {
-                    this.saveShop2Redis(id,30L);
-                });
-            } catch (Exception e){
-                throw new RuntimeException(e);
-            }finally {
-                unLock(lockKey);
-            }
+    public Shop queryWithLogicalExpire(Long id){
+        if (isHashStorage()) {
+            return cacheClient.queryHashWithLogicalExpire(
+                    CACHE_SHOP_HASH_KEY, id, Shop.class, this::getById, CACHE_SHOP_TTL, TimeUnit.MINUTES);
         }
-//        返回信息
-        return shop;
+        return cacheClient.queryWithLogicalExpire(
+                CACHE_SHOP_KEY, id, Shop.class, this::getById, CACHE_SHOP_TTL, TimeUnit.MINUTES);
     }
 
-    private static final ExecutorService CACHE_REBUILD_EXECUTOR = newFixedThreadPool(10);
-
     public Shop queryWithMutex(Long id){
-        String key = CACHE_SHOP_KEY + id;
-//        从redis查询缓存
-        String shopJson = stringRedisTemplate.opsForValue().get(key);
-//        判断是否存在
-        if (StrUtil.isNotBlank(shopJson)){
-//            存在 直接返回
-            return JSONUtil.toBean(shopJson, Shop.class);
-        }
-//        判断redis是否为空值
-        if (shopJson != null){
-            return null;
-        }
-//         获取互斥锁
-        String lockKey = LOCK_SHOP_KEY + id;
-        Shop shop = null;
-        try {
-            boolean isLock = tryLock(lockKey);
-//        判断是否获取成功
-            if (!isLock){
-    //            失败则过会重试
-                Thread.sleep(50);
-                return queryWithMutex(id);
-            }
-//        成功则查询数据库
-            shop = getById(id);
-//        不存在返回空值
-            if (shop == null){
-    //            redis写入空值
-                stringRedisTemplate.opsForValue().set(key,"",CACHE_NULL_TTL, TimeUnit.MINUTES);
-                return null;
-            }
-//        存在 写入redis
-            stringRedisTemplate.opsForValue().set(key,JSONUtil.toJsonStr(shop),CACHE_SHOP_TTL, TimeUnit.MINUTES);
-        } catch (InterruptedException e) {
-            throw new RuntimeException(e);
-        }finally {
-            //        释放互斥锁
-            unLock(lockKey);
-        }
-//        返回
-        return shop;
+        return cacheClient.queryWithMutex(
+                CACHE_SHOP_KEY, id, Shop.class, this::getById, CACHE_SHOP_TTL, TimeUnit.MINUTES);
     }
 
     public Shop queryWithPassThrough(Long id){
-        String key = CACHE_SHOP_KEY + id;
-//        从redis查询缓存
-        String shopJson = stringRedisTemplate.opsForValue().get(key);
-//        判断是否存在
-        if (StrUtil.isNotBlank(shopJson)){
-//            存在 直接返回
-            return JSONUtil.toBean(shopJson, Shop.class);
-        }
-//        判断redis是否为空值
-        if (shopJson != null){
-            return null;
-        }
-//        不存在查询数据库
-        Shop shop = getById(id);
-//        不存在返回错误
-        if (shop == null){
-//            redis写入空值
-            stringRedisTemplate.opsForValue().set(key,"",CACHE_NULL_TTL, TimeUnit.MINUTES);
-            return null;
-        }
-//        存在 写入redis
-        stringRedisTemplate.opsForValue().set(key,JSONUtil.toJsonStr(shop),CACHE_SHOP_TTL, TimeUnit.MINUTES);
-//        返回
-        return shop;
-    }
-
-    private boolean tryLock(String key){
-        Boolean aBoolean = stringRedisTemplate.opsForValue().setIfAbsent(key, "1", 10, TimeUnit.SECONDS);
-        return BooleanUtil.isTrue(aBoolean);
-    }
-
-    private void unLock(String key){
-        stringRedisTemplate.delete(key);
+        return cacheClient.queryWithPassThrough(
+                CACHE_SHOP_KEY, id, Shop.class, this::getById, CACHE_SHOP_TTL, TimeUnit.MINUTES);
     }
 
     public void saveShop2Redis(Long id,Long expiretime){
 //        查询店铺数据
         Shop shop = getById(id);
-//        封装逻辑过期时间
-        RedisData redisData = new RedisData();
-        redisData.setData(shop);
-        redisData.setExpireTime(LocalDateTime.now().plusSeconds(expiretime));
-//        写入redis
-        stringRedisTemplate.opsForValue().set(CACHE_SHOP_KEY + id,JSONUtil.toJsonStr(redisData));
+//        封装逻辑过期时间并写入redis
+        cacheClient.setWithLogicalExpire(CACHE_SHOP_KEY + id, shop, expiretime, TimeUnit.SECONDS);
     }
 
     @Override
@@ -202,11 +126,25 @@ public class ShopServiceImpl extends ServiceImpl<ShopMapper, Shop> implements IS
         }
 //        更新数据库
         updateById(shop);
-//        删除缓存
-        stringRedisTemplate.delete(CACHE_SHOP_KEY + id);
+//        删除缓存的响应体
+        responseBodyCache.delete(CACHE_SHOP_BODY_KEY + id);
+        if (isHashStorage()) {
+//            按hash保存时只更新变化的字段，缓存还没有加载时写入完整数据
+            if (!cacheClient.updateHashFields(CACHE_SHOP_HASH_KEY + id, shop)) {
+                cacheClient.setHashWithLogicalExpire(
+                        CACHE_SHOP_HASH_KEY + id, getById(id), CACHE_SHOP_TTL, TimeUnit.MINUTES, null);
+            }
+            return Result.ok();
+        }
+//        删除缓存，并通知其他实例删除本地缓存
+        cacheClient.delete(CACHE_SHOP_KEY + id);
         return Result.ok();
     }
 
+    private boolean isHashStorage() {
+        return "hash".equals(cacheProperties.getShopStorage());
+    }
+
     @Override
     public Result queryShopByType(Integer typeId, Integer current, Double x, Double y) {
         // 1.判断是否需要根据坐标查询
@@ -252,13 +190,105 @@ public class ShopServiceImpl extends ServiceImpl<ShopMapper, Shop> implements IS
             Distance distance = result.getDistance();
             distanceMap.put(shopIdStr, distance);
         });
-        // 5.根据id查询Shop
-        String idStr = StrUtil.join(",", ids);
-        List<Shop> shops = query().in("id", ids).last("ORDER BY FIELD(id," + idStr + ")").list();
-        for (Shop shop : shops) {
+        // 5.根据id批量查询Shop，先查缓存，未命中的再一次性查询数据库；按hash保存时只读取列表需要的字段
+        List<Shop> cachedShops = isHashStorage()
+                ? cacheClient.queryBatchHashFields(CACHE_SHOP_HASH_KEY, ids, Shop.class, SHOP_LIST_FIELDS,
+                        Shop::getId, this::listByIds, CACHE_SHOP_TTL, TimeUnit.MINUTES)
+                : cacheClient.queryBatchWithLogicalExpire(
+                        CACHE_SHOP_KEY, ids, Shop.class, Shop::getId, this::listByIds, CACHE_SHOP_TTL, TimeUnit.MINUTES);
+        List<Shop> shops = new ArrayList<>(cachedShops.size());
+        for (Shop cachedShop : cachedShops) {
+            // 缓存中的对象可能被其他线程共享，复制后再设置距离
+            Shop shop = BeanUtil.copyProperties(cachedShop, Shop.class);
             shop.setDistance(distanceMap.get(shop.getId().toString()).getValue());
+            shops.add(shop);
         }
         // 6.返回
         return Result.ok(shops);
     }
+
+    @Override
+    public boolean warmUpCache() {
+        int chunkSize = cacheProperties.getWarmUp().getChunkSize();
+        int parallelism = cacheProperties.getWarmUp().getParallelism();
+        if (!warmUpProgress.start(count())) {
+            return false;
+        }
+        log.info("开始预热店铺缓存, 数量: {}", warmUpProgress.getTotal());
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism, new NamedThreadFactory("shop-warm-up-", true));
+        // 限制同时在处理的批次，防止读取数据库比写入redis快时把数据都堆在内存里
+        Semaphore permits = new Semaphore(parallelism * 2);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        try {
+            long lastId = 0;
+            while (failure.get() == null) {
+                // 1.按id顺序分批读取，where id > lastId，不使用offset分页
+                List<Shop> chunk = query().gt("id", lastId).orderByAsc("id").last("limit " + chunkSize).list();
+                if (chunk.isEmpty()) {
+                    break;
+                }
+                lastId = chunk.get(chunk.size() - 1).getId();
+                // 2.交给线程池并行序列化、写入redis
+                permits.acquire();
+                executor.execute(() -> {
+                    try {
+                        writeChunk(chunk);
+                    } catch (Throwable e) {
+                        failure.compareAndSet(null, e);
+                    } finally {
+                        permits.release();
+                    }
+                });
+            }
+            // 3.等待所有批次写完
+            permits.acquire(parallelism * 2);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failure.compareAndSet(null, e);
+        } catch (RuntimeException e) {
+            failure.compareAndSet(null, e);
+        } finally {
+            executor.shutdownNow();
+            warmUpProgress.finish(failure.get());
+        }
+        if (failure.get() != null) {
+            throw new RuntimeException("店铺缓存预热失败", failure.get());
+        }
+        log.info("店铺缓存预热完成, {}", warmUpProgress.toMap());
+        return true;
+    }
+
+    @Override
+    public Map<String, Object> warmUpProgress() {
+        return warmUpProgress.toMap();
+    }
+
+    private void writeChunk(List<Shop> chunk) {
+        // 1.逻辑过期数据，一次pipeline写入
+        Map<Long, Shop> values = new LinkedHashMap<>(chunk.size());
+        // 2.按类型分组的坐标，每个类型一条GEOADD
+        Map<Long, Map<String, Point>> geo = new HashMap<>();
+        for (Shop shop : chunk) {
+            values.put(shop.getId(), shop);
+            if (shop.getX() != null && shop.getY() != null) {
+                geo.computeIfAbsent(shop.getTypeId(), k -> new HashMap<>())
+                        .put(shop.getId().toString(), new Point(shop.getX(), shop.getY()));
+            }
+        }
+        if (isHashStorage()) {
+            cacheClient.setHashBatchWithLogicalExpire(CACHE_SHOP_HASH_KEY, values, CACHE_SHOP_TTL, TimeUnit.MINUTES);
+        } else {
+            cacheClient.setBatchWithLogicalExpire(CACHE_SHOP_KEY, values, CACHE_SHOP_TTL, TimeUnit.MINUTES);
+        }
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection conn = (StringRedisConnection) connection;
+            geo.forEach((typeId, members) -> conn.geoAdd(SHOP_GEO_KEY + typeId, members));
+            return null;
+        });
+        // 3.每10批打印一次进度
+        if (warmUpProgress.chunkWritten(chunk.size()) % 10 == 0) {
+            log.info("店铺缓存预热进度: {}/{}, {}条/秒",
+                    warmUpProgress.getWritten(), warmUpProgress.getTotal(), warmUpProgress.throughput());
+        }
+    }
 }
@@ -1,20 +1,191 @@
 package com.hmdp.service.impl;
 
+import cn.hutool.core.thread.NamedThreadFactory;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hmdp.dto.Result;
 import com.hmdp.entity.ShopType;
 import com.hmdp.mapper.ShopTypeMapper;
 import com.hmdp.service.IShopTypeService;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.hmdp.utils.CachedBody;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.stereotype.Service;
+import org.springframework.util.DigestUtils;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static com.hmdp.utils.RedisConstants.SHOP_TYPE_SYNC_CHANNEL;
+import static com.hmdp.utils.RedisConstants.SHOP_TYPE_VERSION_KEY;
 
 /**
  * <p>
  *  服务实现类
  * </p>
+ * 店铺类型很少变化，保存为内存中不可变的快照（版本号、列表、序列化好的响应体），读取时不访问redis和数据库
+ * 修改后版本号加1并通过pub/sub通知所有实例重新加载；每分钟检查一次版本号，防止丢失消息
  *
  * @author 虎哥
  * @since 2021-12-22
  */
+@Slf4j
 @Service
 public class ShopTypeServiceImpl extends ServiceImpl<ShopTypeMapper, ShopType> implements IShopTypeService {
 
+    private static final long VERSION_CHECK_INTERVAL_SECONDS = 60;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private RedisMessageListenerContainer listenerContainer;
+
+    @Resource
+    private ObjectMapper objectMapper;
+
+    private volatile Snapshot snapshot;
+
+    private final ScheduledExecutorService versionCheckExecutor =
+            Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("shop-type-sync-", true));
+
+    @PostConstruct
+    private void init() {
+        // 其他实例修改后重新加载
+        listenerContainer.addMessageListener(
+                (message, pattern) -> reloadIfNewer(Long.parseLong(new String(message.getBody(), StandardCharsets.UTF_8))),
+                new ChannelTopic(SHOP_TYPE_SYNC_CHANNEL));
+        versionCheckExecutor.scheduleWithFixedDelay(() -> {
+            try {
+                reloadIfNewer(currentVersion());
+            } catch (Exception e) {
+                log.warn("检查店铺类型版本失败", e);
+            }
+        }, VERSION_CHECK_INTERVAL_SECONDS, VERSION_CHECK_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    private void shutdown() {
+        versionCheckExecutor.shutdownNow();
+    }
+
+    @Override
+    public List<ShopType> queryTypeList() {
+        return snapshot().types;
+    }
+
+    @Override
+    public CachedBody queryTypeListBody() {
+        return snapshot().body;
+    }
+
+    @Override
+    public long refreshTypeList() {
+        // 1.版本号加1
+        Long version = stringRedisTemplate.opsForValue().increment(SHOP_TYPE_VERSION_KEY);
+        // 2.本实例直接加载
+        install(load(version));
+        // 3.通知其他实例
+        stringRedisTemplate.convertAndSend(SHOP_TYPE_SYNC_CHANNEL, String.valueOf(version));
+        return version;
+    }
+
+    @Override
+    public boolean save(ShopType entity) {
+        boolean success = super.save(entity);
+        if (success) {
+            refreshTypeList();
+        }
+        return success;
+    }
+
+    @Override
+    public boolean updateById(ShopType entity) {
+        boolean success = super.updateById(entity);
+        if (success) {
+            refreshTypeList();
+        }
+        return success;
+    }
+
+    @Override
+    public boolean removeById(Serializable id) {
+        boolean success = super.removeById(id);
+        if (success) {
+            refreshTypeList();
+        }
+        return success;
+    }
+
+    private Snapshot snapshot() {
+        Snapshot current = snapshot;
+        if (current != null) {
+            return current;
+        }
+        // 第一次读取时加载
+        synchronized (this) {
+            if (snapshot == null) {
+                snapshot = load(currentVersion());
+            }
+            return snapshot;
+        }
+    }
+
+    private void reloadIfNewer(long version) {
+        Snapshot current = snapshot;
+        if (current != null && current.version >= version) {
+            return;
+        }
+        install(load(version));
+    }
+
+    /**
+     * 只替换成更新的版本，并发加载时旧版本不会覆盖新版本
+     */
+    private synchronized void install(Snapshot newSnapshot) {
+        if (snapshot == null || snapshot.version < newSnapshot.version) {
+            snapshot = newSnapshot;
+            log.info("店铺类型快照已更新, version: {}, size: {}", newSnapshot.version, newSnapshot.types.size());
+        }
+    }
+
+    private long currentVersion() {
+        String version = stringRedisTemplate.opsForValue().get(SHOP_TYPE_VERSION_KEY);
+        return version == null ? 0 : Long.parseLong(version);
+    }
+
+    private Snapshot load(long version) {
+        List<ShopType> types = query().orderByAsc("sort").list();
+        byte[] body;
+        try {
+            body = objectMapper.writeValueAsBytes(Result.ok(types));
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException(e);
+        }
+        return new Snapshot(version, Collections.unmodifiableList(types),
+                new CachedBody(DigestUtils.md5DigestAsHex(body), body));
+    }
+
+    private static final class Snapshot {
+        private final long version;
+        private final List<ShopType> types;
+        private final CachedBody body;
+
+        private Snapshot(long version, List<ShopType> types, CachedBody body) {
+            this.version = version;
+            this.types = types;
+            this.body = body;
+        }
+    }
 }
@@ -1,31 +1,61 @@
 package com.hmdp.service.impl;
 
+import cn.hutool.cache.Cache;
+import cn.hutool.cache.CacheUtil;
 import cn.hutool.core.bean.BeanUtil;
+import cn.hutool.core.bean.copier.CopyOptions;
+import cn.hutool.core.net.NetUtil;
+import cn.hutool.core.thread.NamedThreadFactory;
+import cn.hutool.core.util.RuntimeUtil;
+import cn.hutool.core.util.StrUtil;
+import com.hmdp.config.SeckillProperties;
 import com.hmdp.dto.Result;
+import com.hmdp.entity.SeckillVoucher;
 import com.hmdp.entity.VoucherOrder;
 import com.hmdp.mapper.VoucherOrderMapper;
 import com.hmdp.service.ISeckillVoucherService;
 import com.hmdp.service.IVoucherOrderService;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.hmdp.utils.HotKeyDetector;
+import com.hmdp.utils.LuaScripts;
 import com.hmdp.utils.RedisIdWorker;
+import com.hmdp.utils.SeckillMeta;
+import com.hmdp.utils.SeckillSegments;
+import com.hmdp.utils.SeckillSoldOutFlags;
 import com.hmdp.utils.UserHolder;
-import org.redisson.api.RLock;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
 import org.redisson.api.RedissonClient;
-import org.springframework.aop.framework.AopContext;
-import org.springframework.core.io.ClassPathResource;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.data.redis.RedisSystemException;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.RedisStreamCommands;
 import org.springframework.data.redis.connection.stream.*;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.StringRedisTemplate;
-import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.annotation.Resource;
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 import java.util.concurrent.*;
+import java.util.stream.Collectors;
+
+import static com.hmdp.utils.RedisConstants.SECKILL_HOT_KEY;
+import static com.hmdp.utils.RedisConstants.SECKILL_ORDER_GROUP;
 
 /**
  * <p>
@@ -35,6 +65,7 @@ import java.util.concurrent.*;
  * @author 虎哥
  * @since 2021-12-22
  */
+@Slf4j
 @Service
 public class VoucherOrderServiceImpl extends ServiceImpl<VoucherOrderMapper, VoucherOrder> implements IVoucherOrderService {
 
@@ -50,33 +81,154 @@ public class VoucherOrderServiceImpl extends ServiceImpl<VoucherOrderMapper, Vou
     @Resource
     private RedissonClient redissonClient;
 
-    private static final DefaultRedisScript<Long> SECKILL_SCRIPT;
+    @Resource
+    private HotKeyDetector hotKeyDetector;
+
+    @Resource
+    private SeckillProperties seckillProperties;
+
+    @Resource
+    private SeckillSoldOutFlags soldOutFlags;
+
+    /**
+     * 事务代理对象，延迟注入，消费线程启动时本实例可能还没有处理过秒杀请求
+     */
+    @Lazy
+    @Resource
+    private IVoucherOrderService proxy;
+
+    @Resource
+    private LuaScripts luaScripts;
+
+    /**
+     * seckill.lua返回值对应的提示
+     */
+    private static final Map<Integer, String> SECKILL_FAIL_MESSAGES = new HashMap<>();
     static {
-        SECKILL_SCRIPT = new DefaultRedisScript<>();
-        SECKILL_SCRIPT.setLocation(new ClassPathResource("seckill.lua"));
-        SECKILL_SCRIPT.setResultType(Long.class);
+        SECKILL_FAIL_MESSAGES.put(1, "库存不足");
+        SECKILL_FAIL_MESSAGES.put(2, "不能重复下单");
+        SECKILL_FAIL_MESSAGES.put(4, "秒杀尚未开始！");
+        SECKILL_FAIL_MESSAGES.put(5, "秒杀已经结束！");
     }
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    /**
+     * 秒杀券的分段数和秒杀时间，创建后不会变化，启动时预加载，之后新增的第一次下单时从redis读取
+     */
+    private final Map<Long, SeckillMeta> seckillMetas = new ConcurrentHashMap<>();
+
+    /**
+     * 不存在的秒杀券id，过期前直接返回不存在
+     */
+    private Cache<Long, Boolean> missingVouchers;
 //    private BlockingQueue<VoucherOrder> orderTasks = new ArrayBlockingQueue<>(1024 *1024);
-    private static final ExecutorService SECKILL_ORDER_EXECUTOR = Executors.newSingleThreadExecutor();
+    private ExecutorService seckillOrderExecutor;
+
+    /**
+     * 消费的订单stream：每个分片一个，改成多个分片后还包括分片之前的stream.orders
+     */
+    private List<String> orderStreams;
+
+    private ScheduledExecutorService recoveryExecutor;
+
+    /**
+     * 消息最近一次失败的原因，移到死信stream时带上，只记录本实例处理失败的
+     */
+    private final Cache<RecordId, String> lastErrors = CacheUtil.newLRUCache(1024);
+
+    private Counter reclaimedCounter;
+
+    private Counter deadLetterCounter;
+
+    /**
+     * 重复投递或已经买过被insert ignore忽略的订单数，属于正常的幂等结果，不打error日志
+     */
+    private Counter duplicateCounter;
+
+    private volatile boolean running = true;
 
     @PostConstruct
     private void init(){
-        SECKILL_ORDER_EXECUTOR.submit(new VoucherOrderHandler());
+        int streams = seckillProperties.getStreams();
+        if (streams < 1 || streams > SeckillSegments.MAX_STREAMS) {
+            throw new IllegalStateException("hmdp.seckill.streams必须在1到" + SeckillSegments.MAX_STREAMS + "之间: " + streams);
+        }
+//        每个分片的消费者组和stream不存在时创建
+        orderStreams = SeckillSegments.streamKeys(streams);
+        for (String stream : orderStreams) {
+            createGroupIfAbsent(stream);
+        }
+//        从1个stream改成多个分片后，分片之前的stream.orders中可能还有已经扣了库存的订单，继续消费和恢复
+        String legacy = SeckillSegments.legacyStreamKey();
+        if (streams > 1 && Boolean.TRUE.equals(stringRedisTemplate.hasKey(legacy))) {
+            createGroupIfAbsent(legacy);
+            orderStreams.add(legacy);
+            log.warn("继续消费分片之前的订单stream: {}, 确认消费完（没有积压和pending）后可以删除，之后启动不再读取", legacy);
+        }
+        missingVouchers = CacheUtil.newLRUCache(10000, seckillProperties.getMissingVoucherTtl().toMillis());
+        preloadSeckillMetas();
+        duplicateCounter = meterRegistry.counter("seckill.order.duplicate");
+//        每个线程是消费者组中名称不同的消费者，各自处理自己的pending-list；集群中一条XREADGROUP只能读一个分片，所以每个线程只读一个stream
+        int consumers = Math.max(seckillProperties.getConsumers(), orderStreams.size());
+        String prefix = StrUtil.blankToDefault(seckillProperties.getConsumerPrefix(),
+                NetUtil.getLocalHostName() + "-" + RuntimeUtil.getPid());
+        seckillOrderExecutor = Executors.newFixedThreadPool(consumers, new NamedThreadFactory("seckill-order-", false));
+        for (int i = 0; i < consumers; i++) {
+            seckillOrderExecutor.submit(new VoucherOrderHandler(orderStreams.get(i % orderStreams.size()), prefix + "-" + i));
+        }
+        log.info("秒杀订单消费者已启动, 数量: {}, stream: {}, 名称前缀: {}", consumers, orderStreams, prefix);
+//        pending-list恢复
+        reclaimedCounter = meterRegistry.counter("seckill.order.reclaimed");
+        deadLetterCounter = meterRegistry.counter("seckill.order.dead-letter");
+        long interval = seckillProperties.getRecovery().getInterval().toMillis();
+        recoveryExecutor = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("seckill-recovery-", false));
+        recoveryExecutor.scheduleWithFixedDelay(new PendingOrderRecovery(prefix + "-recovery"),
+                interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    private void shutdown() {
+        running = false;
+        seckillOrderExecutor.shutdownNow();
+        recoveryExecutor.shutdownNow();
+    }
+
+    private void createGroupIfAbsent(String stream) {
+        try {
+//            XGROUP CREATE stream.orders:{k} g1 0 MKSTREAM
+            stringRedisTemplate.execute((RedisCallback<String>) connection -> connection.streamCommands().xGroupCreate(
+                    stream.getBytes(StandardCharsets.UTF_8), SECKILL_ORDER_GROUP, ReadOffset.from("0"), true));
+            log.info("已创建消费者组: {}, stream: {}", SECKILL_ORDER_GROUP, stream);
+        } catch (RedisSystemException e) {
+//            消费者组已存在
+            if (!String.valueOf(e.getMostSpecificCause().getMessage()).contains("BUSYGROUP")) {
+                throw e;
+            }
+        }
     }
 
     private class VoucherOrderHandler implements Runnable{
-        String queue = "stream.orders";
+        private final String queue;
+        private final String consumerName;
+
+        private VoucherOrderHandler(String queue, String consumerName) {
+            this.queue = queue;
+            this.consumerName = consumerName;
+        }
+
         @Override
         public void run() {
-            while (true){
+            while (running){
                 try {
 //                                    获取订单信息
 //                    VoucherOrder voucherOrder = orderTasks.take();
 
-//                    获取消息队列中订单信息  XREADGROUP GROUP g1 c1 COUNT 1 BLOCK 2000 STREAMS stream.orders >
+//                    获取消息队列中订单信息  XREADGROUP GROUP g1 consumerName COUNT batchSize BLOCK 2000 STREAMS stream.orders:{k} >
                     List<MapRecord<String, Object, Object>> list = stringRedisTemplate.opsForStream().read(
-                            Consumer.from("g1", "c1"),
-                            StreamReadOptions.empty().count(1).block(Duration.ofSeconds(2)),
+                            Consumer.from(SECKILL_ORDER_GROUP, consumerName),
+                            StreamReadOptions.empty().count(seckillProperties.getBatchSize()).block(Duration.ofSeconds(2)),
                             StreamOffset.create(queue, ReadOffset.lastConsumed())
                     );
 //                    判断是否获取成功
@@ -84,99 +236,338 @@ public class VoucherOrderServiceImpl extends ServiceImpl<VoucherOrderMapper, Vou
 //                    如果没消息则说明没有消息，继续下次循环
                         continue;
                     }
-//                    如果获取成功则解析列表信息并下单
-                    MapRecord<String, Object, Object> record = list.get(0);
-                    Map<Object, Object> value = record.getValue();
-                    VoucherOrder voucherOrder = BeanUtil.fillBeanWithMap(value, new VoucherOrder(), true);
-//                    下单
-                    handleVoucherOrder(voucherOrder);
-//                    ACK确认 SACK stream.orders g1 id
-                    stringRedisTemplate.opsForStream().acknowledge(queue,"g1",record.getId());
+//                    如果获取成功则批量下单并ACK，失败的留在pending-list中，由PendingOrderRecovery重试
+                    handleVoucherOrders(queue, list);
 
                 } catch (Exception e) {
+                    if (!running) {
+                        break;
+                    }
                     log.error("订单处理异常",e);
-                    handlePandingList();
+                    try {
+                        Thread.sleep(1000);
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
                 }
             }
         }
+    }
 
-        private void handlePandingList() {
-            while (true){
-                try {
-//                                    获取订单信息
-//                    VoucherOrder voucherOrder = orderTasks.take();
+    /**
+     * pending-list恢复，和正常消费同时运行
+     * 1.XPENDING查询整个消费者组中空闲超过min-idle的消息，不管属于哪个消费者（包括已经宕机的实例）
+     * 2.投递次数没有超过上限的XCLAIM到自己名下重新下单，XCLAIM会把投递次数加1
+     * 3.超过上限的XCLAIM后移到同一分片的死信stream stream.orders.dlq:{k}，带上失败原因，再XACK
+     * 每个分片的stream依次处理
+     */
+    private class PendingOrderRecovery implements Runnable {
+        private final String consumerName;
 
-//                    获取panding-List中订单信息  XREADGROUP GROUP g1 c1 COUNT 1 STREAMS stream.orders 0
-                    List<MapRecord<String, Object, Object>> list = stringRedisTemplate.opsForStream().read(
-                            Consumer.from("g1", "c1"),
-                            StreamReadOptions.empty().count(1),
-                            StreamOffset.create(queue, ReadOffset.from("0"))
-                    );
-//                    判断是否获取成功
-                    if (list == null || list.isEmpty()){
-//                    如果没消息则说明panding-List没有消息，结束循环
-                        break;
-                    }
-//                    如果获取成功则解析列表信息并下单
-                    MapRecord<String, Object, Object> record = list.get(0);
-                    Map<Object, Object> value = record.getValue();
-                    VoucherOrder voucherOrder = BeanUtil.fillBeanWithMap(value, new VoucherOrder(), true);
-//                    下单
-                    handleVoucherOrder(voucherOrder);
-//                    ACK确认 SACK stream.orders g1 id
-                    stringRedisTemplate.opsForStream().acknowledge(queue,"g1",record.getId());
+        private PendingOrderRecovery(String consumerName) {
+            this.consumerName = consumerName;
+        }
 
+        @Override
+        public void run() {
+            for (String stream : orderStreams) {
+                if (!running) {
+                    return;
+                }
+                try {
+                    recover(stream);
                 } catch (Exception e) {
-                    log.error("panding-List订单处理异常",e);
-                    try {
-                        Thread.sleep(20);
-                    } catch (InterruptedException ex) {
-                        ex.printStackTrace();
+                    log.error("pending-list恢复异常, stream: {}", stream, e);
+                }
+            }
+        }
+
+        private void recover(String stream) {
+            SeckillProperties.Recovery recovery = seckillProperties.getRecovery();
+            long minIdle = recovery.getMinIdle().toMillis();
+            Range<String> range = Range.unbounded();
+            while (running) {
+//                1.XPENDING stream.orders:{k} g1 - + count
+                PendingMessages pending = stringRedisTemplate.opsForStream()
+                        .pending(stream, SECKILL_ORDER_GROUP, range, recovery.getBatchSize());
+                List<RecordId> retry = new ArrayList<>();
+                Map<RecordId, Long> dead = new HashMap<>();
+                for (PendingMessage message : pending) {
+                    if (message.getElapsedTimeSinceLastDelivery().toMillis() < minIdle) {
+                        continue;
+                    }
+                    if (message.getTotalDeliveryCount() >= recovery.getMaxDeliveries()) {
+                        dead.put(message.getId(), message.getTotalDeliveryCount());
+                    } else {
+                        retry.add(message.getId());
+                    }
+                }
+//                2.重新下单，其他实例已经认领的消息空闲时间被重置，XCLAIM不会返回
+                if (!retry.isEmpty()) {
+                    List<MapRecord<String, String, String>> records = claim(stream, recovery, retry);
+                    if (!records.isEmpty()) {
+                        reclaimedCounter.increment(records.size());
+                        handleVoucherOrders(stream, records);
                     }
                 }
+//                3.移到死信stream
+                if (!dead.isEmpty()) {
+                    for (MapRecord<String, String, String> record : claim(stream, recovery, new ArrayList<>(dead.keySet()))) {
+                        deadLetter(stream, record, dead.get(record.getId()));
+                    }
+                }
+                if (pending.size() < recovery.getBatchSize()) {
+                    return;
+                }
+//                4.下一页
+                range = Range.rightUnbounded(Range.Bound.exclusive(pending.get(pending.size() - 1).getIdAsString()));
+            }
+        }
+
+        private List<MapRecord<String, String, String>> claim(String stream, SeckillProperties.Recovery recovery,
+                                                              List<RecordId> ids) {
+//            XCLAIM stream.orders:{k} g1 consumerName minIdle id1 id2 ...
+            List<ByteRecord> records = stringRedisTemplate.execute((RedisCallback<List<ByteRecord>>) connection ->
+                    connection.streamCommands().xClaim(stream.getBytes(StandardCharsets.UTF_8),
+                            SECKILL_ORDER_GROUP, consumerName,
+                            RedisStreamCommands.XClaimOptions.minIdle(recovery.getMinIdle()).ids(ids.toArray(new RecordId[0]))));
+            if (records == null) {
+                return Collections.emptyList();
             }
+            return records.stream()
+                    .map(record -> record.deserialize(StringRedisSerializer.UTF_8))
+                    .collect(Collectors.toList());
+        }
+
+        private void deadLetter(String stream, MapRecord<String, String, String> record, long deliveries) {
+            String reason = StrUtil.blankToDefault(lastErrors.get(record.getId()), "未知");
+            List<String> args = new ArrayList<>();
+            args.add(SECKILL_ORDER_GROUP);
+            args.add(record.getId().getValue());
+            args.add(String.valueOf(deliveries));
+            args.add(reason);
+            record.getValue().forEach((field, value) -> {
+                args.add(String.valueOf(field));
+                args.add(String.valueOf(value));
+            });
+//            XADD stream.orders.dlq:{k} 和 XACK 在一个脚本中执行，两个stream在同一个分片
+            luaScripts.execute(LuaScripts.DEAD_LETTER, Arrays.asList(stream, SeckillSegments.deadLetterKeyOf(stream)),
+                    args.toArray(new String[0]));
+            lastErrors.remove(record.getId());
+            deadLetterCounter.increment();
+            log.error("订单消息超过最大投递次数，移到死信stream, recordId: {}, 投递次数: {}, 原因: {}",
+                    record.getId(), deliveries, reason);
         }
     }
 
+    /**
+     * 整批在一个事务中下单，失败时拆开逐条处理，成功的一次XACK
+     * @return 失败的数量，失败的消息没有ACK，留在pending-list中
+     */
+    private int handleVoucherOrders(String stream, List<? extends MapRecord<String, ?, ?>> records) {
+        List<MapRecord<String, ?, ?>> valid = new ArrayList<>(records.size());
+        List<VoucherOrder> orders = new ArrayList<>(records.size());
+        for (MapRecord<String, ?, ?> record : records) {
+            try {
+                VoucherOrder order = BeanUtil.toBean(record.getValue(), VoucherOrder.class, CopyOptions.create().setIgnoreError(false));
+//                insert ignore会把null写成0，缺少字段的消息不能写入
+                if (order.getId() == null || order.getUserId() == null || order.getVoucherId() == null) {
+                    throw new IllegalArgumentException("缺少id、userId或voucherId");
+                }
+                orders.add(order);
+                valid.add(record);
+            } catch (Exception e) {
+//                格式错误的消息不会成功，留在pending-list中，超过投递次数后进入死信stream
+                lastErrors.put(record.getId(), "消息格式错误: " + e.getMessage());
+                log.error("订单消息格式错误, recordId: {}", record.getId(), e);
+            }
+        }
+        List<RecordId> succeeded = new ArrayList<>(valid.size());
+        try {
+//            1.整批下单：按优惠券扣减库存，一条insert写入所有订单
+            proxy.createVoucherOrders(orders);
+            valid.forEach(record -> succeeded.add(record.getId()));
+        } catch (Exception e) {
+//            2.整批失败（例如某个优惠券库存不足），逐条下单，找出失败的消息
+            log.warn("批量下单失败，逐条重试, 数量: {}", valid.size(), e);
+            for (int i = 0; i < valid.size(); i++) {
+                try {
+                    handleVoucherOrder(orders.get(i));
+                    succeeded.add(valid.get(i).getId());
+                } catch (Exception ex) {
+                    lastErrors.put(valid.get(i).getId(), ex.toString());
+                    log.error("订单处理异常, recordId: {}", valid.get(i).getId(), ex);
+                }
+            }
+        }
+//        3.ACK确认 XACK stream.orders:{k} g1 id1 id2 ...
+        if (!succeeded.isEmpty()) {
+            stringRedisTemplate.opsForStream().acknowledge(
+                    stream, SECKILL_ORDER_GROUP, succeeded.toArray(new RecordId[0]));
+            succeeded.forEach(lastErrors::remove);
+        }
+        return records.size() - succeeded.size();
+    }
+
     private void handleVoucherOrder(VoucherOrder voucherOrder) {
-//        获取用户
-        Long userId = voucherOrder.getUserId();
-//        创建锁对象
-        RLock lock = redissonClient.getLock("lock:order:" + userId);
-//        获取锁
-        boolean isLock = lock.tryLock();
-        if (!isLock){
-            log.error("不允许重复下单");
-            return;
+//        一人一单由数据库唯一索引保证，不再需要按用户加锁
+//        获取代理对象（事务）
+        proxy.createVoucherOrder(voucherOrder);
+    }
+
+    /**
+     * 在用户所在分段扣库存，分段卖完后依次尝试其他分段
+     * @return 0成功，1库存不足，2重复下单
+     */
+    private Long seckillBySegment(Long voucherId, Long userId, int segments) {
+        int streams = seckillProperties.getStreams();
+        int home = SeckillSegments.route(userId, segments);
+        int homeShard = SeckillSegments.shard(voucherId, home, streams);
+        String orderKey = SeckillSegments.orderKey(voucherId, home, segments, streams);
+//        订单id在脚本中扣库存成功后才生成，这里只传入序列号的key和时间戳
+        LocalDateTime now = LocalDateTime.now();
+//        后两个参数是序列号偏移量和模式，见seckill.lua；秒杀时间在脚本中按redis服务器的时间判断
+        String[] args = {voucherId.toString(), userId.toString(), String.valueOf(redisIdWorker.timestamp(now)),
+                String.valueOf(SeckillSegments.idOffset(homeShard)), segments > 1 ? "1" : "0"};
+//        1.用户所在分段，分段卖完时脚本会先把用户记录到这个分段的订单集合（返回3），脚本中还会判断秒杀时间（返回4、5）
+        List<String> keys = segmentKeys(voucherId, home, segments, now);
+        keys.add(orderKey);
+        keys.add(SeckillSegments.metaKey(voucherId, homeShard, streams));
+        Long result = luaScripts.execute(LuaScripts.SECKILL, keys, args);
+        if (result == null || result != 3) {
+            return result;
         }
+//        2.依次从其他分段扣库存，没有成功（包括脚本抛出异常）时都要删除占用的一人一单记录，否则用户再也买不了
+        args[4] = "2";
+        boolean success = false;
         try {
-            //            获取代理对象（事务）
-            proxy.createVoucherOrder(voucherOrder);
-        }finally {
-//            释放锁
-            lock.unlock();
+            for (int i = 1; i < segments; i++) {
+                int segment = (home + i) % segments;
+                args[3] = String.valueOf(SeckillSegments.idOffset(SeckillSegments.shard(voucherId, segment, streams)));
+                Long r = luaScripts.execute(LuaScripts.SECKILL, segmentKeys(voucherId, segment, segments, now), args);
+                if (r != null && r == 0) {
+                    success = true;
+                    return 0L;
+                }
+            }
+//            3.所有分段都卖完了
+            return 1L;
+        } finally {
+            if (!success) {
+                stringRedisTemplate.opsForSet().remove(orderKey, userId.toString());
+            }
         }
     }
 
-    private IVoucherOrderService proxy;
+    /**
+     * 分段的库存key、所在分片的订单stream和订单id序列号key，在同一个slot
+     */
+    private List<String> segmentKeys(Long voucherId, int segment, int segments, LocalDateTime now) {
+        int streams = seckillProperties.getStreams();
+        int shard = SeckillSegments.shard(voucherId, segment, streams);
+        List<String> keys = new ArrayList<>(5);
+        keys.add(SeckillSegments.stockKey(voucherId, segment, segments, streams));
+        keys.add(SeckillSegments.streamKey(shard, streams));
+        keys.add(redisIdWorker.countKey(SeckillSegments.idKeyPrefix(shard, streams), now));
+        return keys;
+    }
+
+    /**
+     * 本地缓存的秒杀券元数据，没有时从redis读取，redis中也没有（之前创建的秒杀券）时从数据库读取并写入redis
+     * @return 秒杀券不存在时返回null，在本地缓存missing-voucher-ttl
+     */
+    private SeckillMeta seckillMetaOf(Long voucherId) {
+        SeckillMeta meta = seckillMetas.get(voucherId);
+        if (meta != null) {
+            return meta;
+        }
+        if (missingVouchers.containsKey(voucherId)) {
+            return null;
+        }
+        meta = SeckillMeta.fromHash(stringRedisTemplate.opsForHash().entries(metaKeyOf(voucherId)));
+        if (meta == null) {
+            SeckillVoucher voucher = seckillVoucherService.getById(voucherId);
+            if (voucher == null) {
+                missingVouchers.put(voucherId, Boolean.TRUE);
+                return null;
+            }
+            meta = saveSeckillMeta(voucher);
+        }
+        seckillMetas.put(voucherId, meta);
+        return meta;
+    }
+
+    /**
+     * 之前创建的秒杀券没有元数据，只有一段，写入redis后lua脚本才会判断秒杀时间
+     */
+    private SeckillMeta saveSeckillMeta(SeckillVoucher voucher) {
+        SeckillMeta meta = SeckillMeta.of(voucher, 1);
+        stringRedisTemplate.opsForHash().putAll(metaKeyOf(voucher.getVoucherId()), meta.toHash());
+        return meta;
+    }
+
+    /**
+     * 元数据的主副本，在分段0所在的分片
+     */
+    private String metaKeyOf(Long voucherId) {
+        int streams = seckillProperties.getStreams();
+        return SeckillSegments.metaKey(voucherId, SeckillSegments.shard(voucherId, 0, streams), streams);
+    }
+
+    /**
+     * 预加载还没有结束的秒杀券元数据
+     */
+    private void preloadSeckillMetas() {
+        try {
+            List<SeckillVoucher> vouchers = seckillVoucherService.query().gt("end_time", LocalDateTime.now()).list();
+            for (SeckillVoucher voucher : vouchers) {
+                SeckillMeta meta = SeckillMeta.fromHash(
+                        stringRedisTemplate.opsForHash().entries(metaKeyOf(voucher.getVoucherId())));
+                seckillMetas.put(voucher.getVoucherId(), meta != null ? meta : saveSeckillMeta(voucher));
+            }
+            log.info("已预加载秒杀券: {}", vouchers.size());
+        } catch (Exception e) {
+            log.warn("预加载秒杀券失败，第一次下单时加载", e);
+        }
+    }
 
     @Override
     public Result seckillVoucher(Long voucherId) {
 //        获取用户
         Long id = UserHolder.getUser().getId();
-//        获取订单id
-        long orderId = redisIdWorker.nextId("order");
-//      执行lua脚本
-        Long result = stringRedisTemplate.execute(
-                SECKILL_SCRIPT,
-                Collections.emptyList(),
-                voucherId.toString(), id.toString(), String.valueOf(orderId)
-        );
+//      库存在lua脚本中扣减，只统计访问量，不能从本地返回；库存分成多个key，按秒杀券的逻辑key seckill:id 统计
+        hotKeyDetector.record(SECKILL_HOT_KEY + voucherId);
+//      已售罄直接返回，不访问redis
+        if (soldOutFlags.isSoldOut(voucherId)) {
+            return Result.fail("库存不足");
+        }
+//      按本地缓存的秒杀时间和本机时钟快速拒绝，不访问redis；以lua脚本中按redis服务器时间的判断为准
+        SeckillMeta meta = seckillMetaOf(voucherId);
+        if (meta == null) {
+            return Result.fail("秒杀券不存在");
+        }
+        long now = System.currentTimeMillis();
+        if (meta.notStarted(now)) {
+            return Result.fail("秒杀尚未开始！");
+        }
+        if (meta.ended(now)) {
+            return Result.fail("秒杀已经结束！");
+        }
+//      执行lua脚本，在用户所在的库存分段扣减，成功后在脚本中生成订单id
+        Long result = seckillBySegment(voucherId, id, meta.getSegments());
+//      不是库存不足时说明有库存（例如补充库存的通知丢失后重新判断），清除本地的售罄标记
+        if (result != 1) {
+            soldOutFlags.clearLocal(voucherId);
+        }
 //      判断结果是0
-        int r = result.intValue();
         if (result != 0){
+            if (result == 1) {
+//              标记售罄并通知其他实例
+                soldOutFlags.markSoldOut(voucherId);
+            }
             //      不为0 没有购买资格
-            return Result.fail(result == 1 ? "库存不足" : "不能重复下单");
+            return Result.fail(SECKILL_FAIL_MESSAGES.getOrDefault(result.intValue(), "下单失败"));
         }
 
 //      为0 把下单信息保存到阻塞队列
@@ -191,9 +582,6 @@ public class VoucherOrderServiceImpl extends ServiceImpl<VoucherOrderMapper, Vou
 //        voucherOrder.setVoucherId(voucherId);
 ////        创建阻塞队列
 //        orderTasks.add(voucherOrder);
-        //            获取代理对象（事务）
-        proxy = (IVoucherOrderService) AopContext.currentProxy();
-
 //      返回订单id
         return Result.ok(0);
 
@@ -219,7 +607,7 @@ public class VoucherOrderServiceImpl extends ServiceImpl<VoucherOrderMapper, Vou
 //        Long id = UserHolder.getUser().getId();
 //
 ////        创建锁对象
-////        SimpleRedisLock lock = new SimpleRedisLock("order:" + id, stringRedisTemplate);
+////        SimpleRedisLock lock = new SimpleRedisLock("order:" + id, stringRedisTemplate, luaScripts);
 //        RLock lock = redissonClient.getLock("lock:order:" + id);
 ////        获取锁
 //        boolean isLock = lock.tryLock();
@@ -243,25 +631,49 @@ public class VoucherOrderServiceImpl extends ServiceImpl<VoucherOrderMapper, Vou
     @Override
     @Transactional
     public void createVoucherOrder(VoucherOrder voucherOrder) {
-        //      一人一单
-        Long id = voucherOrder.getUserId();
-
-        Integer count = query().eq("user_id", id).eq("voucher_id", voucherOrder.getVoucherId()).count();
-        if (count > 0) {
-            log.error("用户已经买过一次了");
+        //      一人一单：唯一索引(user_id, voucher_id, seckill)，已经买过或者重复投递时不插入，不需要先查询
+        int inserted = getBaseMapper().insertIgnore(Collections.singletonList(voucherOrder));
+        if (inserted == 0) {
+            duplicateCounter.increment();
+            log.debug("用户已经买过一次了, userId: {}, voucherId: {}", voucherOrder.getUserId(), voucherOrder.getVoucherId());
             return;
         }
-        //5，扣减库存
+        //5，扣减库存，库存不足时回滚订单，消息留在pending-list中
         boolean success = seckillVoucherService.update()
                 .setSql("stock= stock -1")
                 .eq("voucher_id", voucherOrder.getVoucherId())
                 .gt("stock", 0)
                 .update();
         if (!success) {
-            log.error("库存不足！");
-            return;
+            throw new RuntimeException("库存不足, voucherId: " + voucherOrder.getVoucherId());
         }
+    }
 
-        save(voucherOrder);
+    @Override
+    @Transactional
+    public void createVoucherOrders(List<VoucherOrder> voucherOrders) {
+        //      1.按优惠券分组，按id顺序处理，多个消费者同时扣减时加锁顺序一致
+        Map<Long, List<VoucherOrder>> ordersByVoucher = voucherOrders.stream()
+                .collect(Collectors.groupingBy(VoucherOrder::getVoucherId, TreeMap::new, Collectors.toList()));
+        ordersByVoucher.forEach((voucherId, orders) -> {
+            //      2.insert ignore，一人一单由唯一索引(user_id, voucher_id, seckill)保证，重复投递的消息主键冲突，都不会插入
+            int inserted = getBaseMapper().insertIgnore(orders);
+            if (inserted < orders.size()) {
+                duplicateCounter.increment(orders.size() - inserted);
+                log.debug("用户已经买过一次了, voucherId: {}, 忽略数量: {}", voucherId, orders.size() - inserted);
+            }
+            if (inserted == 0) {
+                return;
+            }
+            //      3.按实际插入的数量扣减库存 stock = stock - k，库存不足时整批回滚
+            boolean success = seckillVoucherService.update()
+                    .setSql("stock = stock - " + inserted)
+                    .eq("voucher_id", voucherId)
+                    .ge("stock", inserted)
+                    .update();
+            if (!success) {
+                throw new RuntimeException("库存不足, voucherId: " + voucherId);
+            }
+        });
     }
 }
@@ -1,20 +1,27 @@
 package com.hmdp.service.impl;
 
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.hmdp.config.SeckillProperties;
 import com.hmdp.dto.Result;
 import com.hmdp.entity.Voucher;
 import com.hmdp.mapper.VoucherMapper;
 import com.hmdp.entity.SeckillVoucher;
 import com.hmdp.service.ISeckillVoucherService;
 import com.hmdp.service.IVoucherService;
+import com.hmdp.utils.SeckillMeta;
+import com.hmdp.utils.SeckillSegments;
+import com.hmdp.utils.SeckillSoldOutFlags;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import javax.annotation.Resource;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
-import static com.hmdp.utils.RedisConstants.SECKILL_STOCK_KEY;
 
 /**
  * <p>
@@ -33,6 +40,12 @@ public class VoucherServiceImpl extends ServiceImpl<VoucherMapper, Voucher> impl
     @Resource
     private StringRedisTemplate stringRedisTemplate;
 
+    @Resource
+    private SeckillProperties seckillProperties;
+
+    @Resource
+    private SeckillSoldOutFlags soldOutFlags;
+
     @Override
     public Result queryVoucherOfShop(Long shopId) {
         // 查询优惠券信息
@@ -53,7 +66,47 @@ public class VoucherServiceImpl extends ServiceImpl<VoucherMapper, Voucher> impl
         seckillVoucher.setBeginTime(voucher.getBeginTime());
         seckillVoucher.setEndTime(voucher.getEndTime());
         seckillVoucherService.save(seckillVoucher);
-//        保存到redis中
-        stringRedisTemplate.opsForValue().set(SECKILL_STOCK_KEY + voucher.getId(),voucher.getStock().toString());
+//        保存到redis中，库存按配置拆成多段
+        int streams = seckillProperties.getStreams();
+        int segments = SeckillSegments.segmentsOf(voucher.getStock(), seckillProperties.getStockSegments());
+        int[] stocks = SeckillSegments.split(voucher.getStock(), segments);
+        Map<String, String> stockMap = new HashMap<>(segments);
+        Set<Integer> shards = new HashSet<>();
+        for (int i = 0; i < segments; i++) {
+            stockMap.put(SeckillSegments.stockKey(voucher.getId(), i, segments, streams), String.valueOf(stocks[i]));
+            shards.add(SeckillSegments.shard(voucher.getId(), i, streams));
+        }
+        stringRedisTemplate.opsForValue().multiSet(stockMap);
+//        分段数和秒杀时间，seckill.lua中判断秒杀是否开始、结束，每个用到的分片写一份，和分段的其他key在同一个slot
+        Map<String, String> meta = SeckillMeta.of(seckillVoucher, segments).toHash();
+        for (Integer shard : shards) {
+            stringRedisTemplate.opsForHash().putAll(SeckillSegments.metaKey(voucher.getId(), shard, streams), meta);
+        }
+    }
+
+    @Override
+    @Transactional
+    public void addSeckillStock(Long voucherId, int count) {
+        // 1.数据库加库存
+        boolean success = seckillVoucherService.update()
+                .setSql("stock = stock + " + count)
+                .eq("voucher_id", voucherId)
+                .update();
+        if (!success) {
+            throw new RuntimeException("秒杀券不存在");
+        }
+        // 2.redis中按分段加库存
+        int streams = seckillProperties.getStreams();
+        Object value = stringRedisTemplate.opsForHash()
+                .get(SeckillSegments.metaKey(voucherId, SeckillSegments.shard(voucherId, 0, streams), streams), "segments");
+        int segments = value == null ? 1 : Integer.parseInt(value.toString());
+        int[] stocks = SeckillSegments.split(count, segments);
+        for (int i = 0; i < segments; i++) {
+            if (stocks[i] > 0) {
+                stringRedisTemplate.opsForValue().increment(SeckillSegments.stockKey(voucherId, i, segments, streams), stocks[i]);
+            }
+        }
+        // 3.清除售罄标记
+        soldOutFlags.clear(voucherId);
     }
 }
@@ -0,0 +1,60 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.bean.BeanUtil;
+import cn.hutool.core.convert.Convert;
+import cn.hutool.core.util.ReflectUtil;
+
+import java.lang.reflect.Field;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 对象和redis hash之间的转换，每个字段对应hash中的一个field，值按字符串保存
+ * null字段不写入；以下划线开头的field保留给CacheClient使用（例如逻辑过期时间），转换成对象时跳过
+ */
+public final class BeanHashMapper {
+
+    private BeanHashMapper() {
+    }
+
+    public static Map<String, String> toHash(Object bean) {
+        Map<String, Object> map = BeanUtil.beanToMap(bean, false, true);
+        Map<String, String> hash = new HashMap<>(map.size());
+        map.forEach((field, value) -> hash.put(field, toString(value)));
+        return hash;
+    }
+
+    /**
+     * 转换成对象，hash中没有的field保持null，可以只转换HMGET查询出的部分字段
+     */
+    public static <T> T fromHash(Map<String, String> hash, Class<T> type) {
+        T bean = ReflectUtil.newInstance(type);
+        hash.forEach((name, value) -> {
+            if (value == null || name.startsWith("_")) {
+                return;
+            }
+            Field field = ReflectUtil.getField(type, name);
+            if (field == null) {
+                return;
+            }
+            ReflectUtil.setFieldValue(bean, field, fromString(value, field.getType()));
+        });
+        return bean;
+    }
+
+    private static String toString(Object value) {
+        // LocalDateTime按ISO格式保存，保留纳秒，其他类型直接toString
+        return value instanceof LocalDateTime ? value.toString() : String.valueOf(value);
+    }
+
+    private static Object fromString(String value, Class<?> type) {
+        if (type == String.class) {
+            return value;
+        }
+        if (type == LocalDateTime.class) {
+            return LocalDateTime.parse(value);
+        }
+        return Convert.convert(type, value);
+    }
+}
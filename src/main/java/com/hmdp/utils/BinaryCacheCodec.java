@@ -0,0 +1,401 @@
+package com.hmdp.utils;
+
+import cn.hutool.json.JSONUtil;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 紧凑的二进制编码，按字段顺序直接读写，不经过中间的JSONObject
+ * <pre>
+ * | magic(1) | flags(1) | schemaHash(4) | expireAt(8) | rebuildCost(4) | 字段1 | 字段2 | ... |
+ * </pre>
+ * 头部固定18字节，expireAt为逻辑过期时间（UTC毫秒），没有逻辑过期时为0；
+ * rebuildCost为重建耗时（毫秒），没有记录时为-1；
+ * 值为null时flags带上FLAG_NULL，只有头部，schemaHash为0，解码得到null（逻辑过期的空值标记）；
+ * schemaHash由字段名和类型计算，实体类字段变化后旧数据解码失败，按未命中处理
+ */
+@Component
+public class BinaryCacheCodec implements CacheCodec {
+
+    public static final String NAME = "binary";
+
+    /**
+     * 不是合法的UTF-8首字节，不会与JSON数据混淆
+     */
+    private static final byte MAGIC = (byte) 0xB1;
+    private static final byte FLAG_LOGICAL_EXPIRE = 1;
+    private static final byte FLAG_NULL = 2;
+    private static final int HEADER_LENGTH = 18;
+
+    private static final int KIND_LONG = 1;
+    private static final int KIND_INT = 2;
+    private static final int KIND_SHORT = 3;
+    private static final int KIND_BYTE = 4;
+    private static final int KIND_BOOLEAN = 5;
+    private static final int KIND_DOUBLE = 6;
+    private static final int KIND_FLOAT = 7;
+    private static final int KIND_STRING = 8;
+    private static final int KIND_LOCAL_DATE_TIME = 9;
+    private static final int KIND_LOCAL_DATE = 10;
+    /**
+     * 其他类型的字段退化为JSON字符串
+     */
+    private static final int KIND_JSON = 11;
+
+    private final Map<Class<?>, Schema> schemas = new ConcurrentHashMap<>();
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public boolean canDecode(byte[] bytes) {
+        return bytes.length >= HEADER_LENGTH && bytes[0] == MAGIC;
+    }
+
+    @Override
+    public byte[] encode(Object value) {
+        return write(value, (byte) 0, 0, -1);
+    }
+
+    @Override
+    public <T> T decode(byte[] bytes, Class<T> type) {
+        return read(bytes, type);
+    }
+
+    @Override
+    public byte[] encodeWithLogicalExpire(Object value, LocalDateTime expireTime, Long rebuildCost) {
+        int cost = rebuildCost == null ? -1 : (int) Math.min(rebuildCost, Integer.MAX_VALUE);
+        return write(value, FLAG_LOGICAL_EXPIRE, expireTime.toInstant(ZoneOffset.UTC).toEpochMilli(), cost);
+    }
+
+    @Override
+    public <T> RedisData decodeWithLogicalExpire(byte[] bytes, Class<T> type) {
+        long expireAt = readLong(bytes, 6);
+        RedisData redisData = new RedisData();
+        redisData.setExpireTime(LocalDateTime.ofEpochSecond(
+                Math.floorDiv(expireAt, 1000L), (int) Math.floorMod(expireAt, 1000L) * 1000000, ZoneOffset.UTC));
+        int rebuildCost = readInt(bytes, 14);
+        redisData.setRebuildCost(rebuildCost < 0 ? null : (long) rebuildCost);
+        redisData.setData(read(bytes, type));
+        return redisData;
+    }
+
+    private byte[] write(Object value, byte flags, long expireAt, int rebuildCost) {
+        Writer writer = new Writer(value == null ? HEADER_LENGTH : 128);
+        writer.writeByte(MAGIC);
+        if (value == null) {
+            // 没有字段，不需要schema
+            writer.writeByte((byte) (flags | FLAG_NULL));
+            writer.writeInt(0);
+            writer.writeLong(expireAt);
+            writer.writeInt(rebuildCost);
+            return writer.toByteArray();
+        }
+        Schema schema = schemaOf(value.getClass());
+        writer.writeByte(flags);
+        writer.writeInt(schema.hash);
+        writer.writeLong(expireAt);
+        writer.writeInt(rebuildCost);
+        try {
+            for (int i = 0; i < schema.fields.length; i++) {
+                writeField(writer, schema.kinds[i], schema.fields[i].get(value));
+            }
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+        return writer.toByteArray();
+    }
+
+    private <T> T read(byte[] bytes, Class<T> type) {
+        if (!canDecode(bytes)) {
+            throw new IllegalArgumentException("不是二进制编码的数据");
+        }
+        if ((bytes[1] & FLAG_NULL) != 0) {
+            return null;
+        }
+        Schema schema = schemaOf(type);
+        if (readInt(bytes, 2) != schema.hash) {
+            throw new IllegalStateException("字段结构已变化: " + type.getName());
+        }
+        Reader reader = new Reader(bytes, HEADER_LENGTH);
+        try {
+            T value = type.cast(schema.constructor.newInstance());
+            for (int i = 0; i < schema.fields.length; i++) {
+                Object fieldValue = readField(reader, schema.kinds[i], schema.fields[i].getType());
+                if (fieldValue != null) {
+                    schema.fields[i].set(value, fieldValue);
+                }
+            }
+            return value;
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void writeField(Writer writer, int kind, Object value) {
+        // 第一个字节标记是否为null
+        if (value == null) {
+            writer.writeByte((byte) 0);
+            return;
+        }
+        writer.writeByte((byte) 1);
+        switch (kind) {
+            case KIND_LONG:
+                writer.writeLong((Long) value);
+                break;
+            case KIND_INT:
+                writer.writeInt((Integer) value);
+                break;
+            case KIND_SHORT:
+                writer.writeShort((Short) value);
+                break;
+            case KIND_BYTE:
+                writer.writeByte((Byte) value);
+                break;
+            case KIND_BOOLEAN:
+                writer.writeByte((byte) ((Boolean) value ? 1 : 0));
+                break;
+            case KIND_DOUBLE:
+                writer.writeLong(Double.doubleToRawLongBits((Double) value));
+                break;
+            case KIND_FLOAT:
+                writer.writeInt(Float.floatToRawIntBits((Float) value));
+                break;
+            case KIND_STRING:
+                writer.writeString((String) value);
+                break;
+            case KIND_LOCAL_DATE_TIME:
+                LocalDateTime time = (LocalDateTime) value;
+                writer.writeLong(time.toEpochSecond(ZoneOffset.UTC));
+                writer.writeInt(time.getNano());
+                break;
+            case KIND_LOCAL_DATE:
+                writer.writeLong(((LocalDate) value).toEpochDay());
+                break;
+            default:
+                writer.writeString(JSONUtil.toJsonStr(value));
+        }
+    }
+
+    private Object readField(Reader reader, int kind, Class<?> fieldType) {
+        if (reader.readByte() == 0) {
+            return null;
+        }
+        switch (kind) {
+            case KIND_LONG:
+                return reader.readLong();
+            case KIND_INT:
+                return reader.readInt();
+            case KIND_SHORT:
+                return reader.readShort();
+            case KIND_BYTE:
+                return reader.readByte();
+            case KIND_BOOLEAN:
+                return reader.readByte() != 0;
+            case KIND_DOUBLE:
+                return Double.longBitsToDouble(reader.readLong());
+            case KIND_FLOAT:
+                return Float.intBitsToFloat(reader.readInt());
+            case KIND_STRING:
+                return reader.readString();
+            case KIND_LOCAL_DATE_TIME:
+                long seconds = reader.readLong();
+                return LocalDateTime.ofEpochSecond(seconds, reader.readInt(), ZoneOffset.UTC);
+            case KIND_LOCAL_DATE:
+                return LocalDate.ofEpochDay(reader.readLong());
+            default:
+                return JSONUtil.toBean(reader.readString(), fieldType);
+        }
+    }
+
+    private Schema schemaOf(Class<?> type) {
+        return schemas.computeIfAbsent(type, Schema::new);
+    }
+
+    private static int kindOf(Class<?> type) {
+        if (type == Long.class || type == long.class) {
+            return KIND_LONG;
+        }
+        if (type == Integer.class || type == int.class) {
+            return KIND_INT;
+        }
+        if (type == Short.class || type == short.class) {
+            return KIND_SHORT;
+        }
+        if (type == Byte.class || type == byte.class) {
+            return KIND_BYTE;
+        }
+        if (type == Boolean.class || type == boolean.class) {
+            return KIND_BOOLEAN;
+        }
+        if (type == Double.class || type == double.class) {
+            return KIND_DOUBLE;
+        }
+        if (type == Float.class || type == float.class) {
+            return KIND_FLOAT;
+        }
+        if (type == String.class) {
+            return KIND_STRING;
+        }
+        if (type == LocalDateTime.class) {
+            return KIND_LOCAL_DATE_TIME;
+        }
+        if (type == LocalDate.class) {
+            return KIND_LOCAL_DATE;
+        }
+        return KIND_JSON;
+    }
+
+    private static int readInt(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xFF) << 24 | (bytes[offset + 1] & 0xFF) << 16
+                | (bytes[offset + 2] & 0xFF) << 8 | (bytes[offset + 3] & 0xFF);
+    }
+
+    private static long readLong(byte[] bytes, int offset) {
+        return (readInt(bytes, offset) & 0xFFFFFFFFL) << 32 | (readInt(bytes, offset + 4) & 0xFFFFFFFFL);
+    }
+
+    /**
+     * 类的字段结构，按字段名排序，跳过static和transient字段
+     */
+    private static class Schema {
+        private final Constructor<?> constructor;
+        private final Field[] fields;
+        private final int[] kinds;
+        private final int hash;
+
+        private Schema(Class<?> type) {
+            try {
+                this.constructor = type.getDeclaredConstructor();
+                this.constructor.setAccessible(true);
+            } catch (NoSuchMethodException e) {
+                throw new IllegalArgumentException("缺少无参构造: " + type.getName(), e);
+            }
+            List<Field> list = new ArrayList<>();
+            for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+                for (Field field : c.getDeclaredFields()) {
+                    int modifiers = field.getModifiers();
+                    if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers)) {
+                        continue;
+                    }
+                    field.setAccessible(true);
+                    list.add(field);
+                }
+            }
+            list.sort(Comparator.comparing(Field::getName));
+            this.fields = list.toArray(new Field[0]);
+            this.kinds = new int[fields.length];
+            StringBuilder signature = new StringBuilder();
+            for (int i = 0; i < fields.length; i++) {
+                kinds[i] = kindOf(fields[i].getType());
+                signature.append(fields[i].getName()).append(':').append(kinds[i]).append(';');
+            }
+            this.hash = signature.toString().hashCode();
+        }
+    }
+
+    private static class Writer {
+        private byte[] buf;
+        private int pos;
+
+        private Writer(int capacity) {
+            this.buf = new byte[capacity];
+        }
+
+        private void ensure(int n) {
+            if (pos + n > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(buf.length << 1, pos + n));
+            }
+        }
+
+        private void writeByte(byte b) {
+            ensure(1);
+            buf[pos++] = b;
+        }
+
+        private void writeShort(short v) {
+            ensure(2);
+            buf[pos++] = (byte) (v >>> 8);
+            buf[pos++] = (byte) v;
+        }
+
+        private void writeInt(int v) {
+            ensure(4);
+            buf[pos++] = (byte) (v >>> 24);
+            buf[pos++] = (byte) (v >>> 16);
+            buf[pos++] = (byte) (v >>> 8);
+            buf[pos++] = (byte) v;
+        }
+
+        private void writeLong(long v) {
+            writeInt((int) (v >>> 32));
+            writeInt((int) v);
+        }
+
+        private void writeString(String s) {
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            writeInt(bytes.length);
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buf, pos, bytes.length);
+            pos += bytes.length;
+        }
+
+        private byte[] toByteArray() {
+            return Arrays.copyOf(buf, pos);
+        }
+    }
+
+    private static class Reader {
+        private final byte[] buf;
+        private int pos;
+
+        private Reader(byte[] buf, int pos) {
+            this.buf = buf;
+            this.pos = pos;
+        }
+
+        private byte readByte() {
+            return buf[pos++];
+        }
+
+        private short readShort() {
+            short v = (short) ((buf[pos] & 0xFF) << 8 | (buf[pos + 1] & 0xFF));
+            pos += 2;
+            return v;
+        }
+
+        private int readInt() {
+            int v = BinaryCacheCodec.readInt(buf, pos);
+            pos += 4;
+            return v;
+        }
+
+        private long readLong() {
+            long v = BinaryCacheCodec.readLong(buf, pos);
+            pos += 8;
+            return v;
+        }
+
+        private String readString() {
+            int length = readInt();
+            String s = new String(buf, pos, length, StandardCharsets.UTF_8);
+            pos += length;
+            return s;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.lang.hash.MurmurHash;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 本地布隆过滤器，位的排列与redis的bitmap一致，方便和redis之间整体同步
+ */
+public class BloomFilter {
+
+    private final long numBits;
+    private final int numHashFunctions;
+    private volatile AtomicLongArray bits;
+
+    public BloomFilter(long expectedInsertions, double fpp) {
+        this.numBits = optimalNumOfBits(expectedInsertions, fpp);
+        this.numHashFunctions = optimalNumOfHashFunctions(expectedInsertions, numBits);
+        this.bits = new AtomicLongArray(wordCount());
+    }
+
+    /**
+     * m = -n * ln(p) / (ln2)^2
+     */
+    public static long optimalNumOfBits(long n, double p) {
+        if (p <= 0) {
+            p = Double.MIN_VALUE;
+        }
+        return Math.max(64, (long) (-n * Math.log(p) / (Math.log(2) * Math.log(2))));
+    }
+
+    /**
+     * k = m / n * ln2
+     */
+    public static int optimalNumOfHashFunctions(long n, long m) {
+        return Math.max(1, (int) Math.round((double) m / Math.max(1, n) * Math.log(2)));
+    }
+
+    /**
+     * 计算id对应的k个位，使用murmur128的两段结果做双重哈希
+     */
+    public long[] offsets(Object id) {
+        long[] hash = MurmurHash.hash128(String.valueOf(id));
+        long[] offsets = new long[numHashFunctions];
+        long combined = hash[0];
+        for (int i = 0; i < numHashFunctions; i++) {
+            offsets[i] = (combined & Long.MAX_VALUE) % numBits;
+            combined += hash[1];
+        }
+        return offsets;
+    }
+
+    public boolean mightContain(Object id) {
+        AtomicLongArray current = bits;
+        for (long offset : offsets(id)) {
+            if ((current.get((int) (offset >>> 6)) & mask(offset)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public void put(Object id) {
+        for (long offset : offsets(id)) {
+            setBit(offset);
+        }
+    }
+
+    public void setBit(long offset) {
+        AtomicLongArray current = bits;
+        int index = (int) (offset >>> 6);
+        long mask = mask(offset);
+        long old;
+        do {
+            old = current.get(index);
+            if ((old & mask) != 0) {
+                return;
+            }
+        } while (!current.compareAndSet(index, old, old | mask));
+    }
+
+    /**
+     * 转换为redis bitmap的字节，第n位对应第n/8个字节从高到低的第n%8位
+     */
+    public byte[] toRedisBytes() {
+        AtomicLongArray current = bits;
+        byte[] bytes = new byte[(int) ((numBits + 7) >>> 3)];
+        for (int i = 0; i < current.length(); i++) {
+            long word = current.get(i);
+            while (word != 0) {
+                long offset = ((long) i << 6) + Long.numberOfTrailingZeros(word);
+                bytes[(int) (offset >>> 3)] |= (byte) (0x80 >>> (offset & 7));
+                word &= word - 1;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * 用redis中的bitmap整体替换本地的位
+     */
+    public void loadRedisBytes(byte[] bytes) {
+        AtomicLongArray loaded = new AtomicLongArray(wordCount());
+        int length = (int) Math.min(bytes.length, (numBits + 7) >>> 3);
+        for (int i = 0; i < length; i++) {
+            int b = bytes[i] & 0xFF;
+            for (int j = 0; b != 0 && j < 8; j++) {
+                if ((b & (0x80 >>> j)) != 0) {
+                    long offset = ((long) i << 3) + j;
+                    int index = (int) (offset >>> 6);
+                    loaded.set(index, loaded.get(index) | mask(offset));
+                }
+            }
+        }
+        this.bits = loaded;
+    }
+
+    public long bitCount() {
+        AtomicLongArray current = bits;
+        long count = 0;
+        for (int i = 0; i < current.length(); i++) {
+            count += Long.bitCount(current.get(i));
+        }
+        return count;
+    }
+
+    /**
+     * 按当前置位比例估算的误判率 (bitCount / m) ^ k
+     */
+    public double expectedFpp() {
+        return Math.pow((double) bitCount() / numBits, numHashFunctions);
+    }
+
+    public long getNumBits() {
+        return numBits;
+    }
+
+    public int getNumHashFunctions() {
+        return numHashFunctions;
+    }
+
+    private int wordCount() {
+        return (int) ((numBits + 63) >>> 6);
+    }
+
+    private static long mask(long offset) {
+        return 1L << (offset & 63);
+    }
+}
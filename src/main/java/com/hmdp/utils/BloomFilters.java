@@ -0,0 +1,315 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.thread.NamedThreadFactory;
+import com.hmdp.config.CacheProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import static com.hmdp.utils.RedisConstants.BLOOM_KEY;
+import static com.hmdp.utils.RedisConstants.BLOOM_SYNC_CHANNEL;
+
+/**
+ * 按缓存key前缀划分的布隆过滤器，用于拦截不存在的id，防止缓存穿透
+ * 位数据以redis的bitmap为准，每个实例在本地保存一份只读副本，查询时不访问redis
+ * redis中每个过滤器有一个版本号，每次新增、重建加1；本地副本记录加载时的版本号并按收到的新增消息累加，
+ * 定时只比较版本号，不一致（丢失了广播消息）时才重新加载整个bitmap
+ */
+@Slf4j
+@Component
+public class BloomFilters {
+
+    /**
+     * 广播消息中表示整体重新加载的id
+     */
+    private static final String RELOAD_ALL = "*";
+
+    /**
+     * 重建标记的过期时间，重建的实例宕机后标记自动删除
+     */
+    private static final Duration REBUILD_TIMEOUT = Duration.ofHours(1);
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    private final LuaScripts luaScripts;
+
+    private final Map<String, Entry> filters = new ConcurrentHashMap<>();
+
+    /**
+     * 别名前缀到过滤器的映射，别名和主前缀共用同一个过滤器
+     */
+    private final Map<String, Entry> aliases = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService reloadExecutor = Executors.newSingleThreadScheduledExecutor(
+            new NamedThreadFactory("bloom-reload-", true));
+
+    public BloomFilters(StringRedisTemplate stringRedisTemplate,
+                        RedisMessageListenerContainer listenerContainer,
+                        CacheProperties cacheProperties,
+                        LuaScripts luaScripts) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.luaScripts = luaScripts;
+        CacheProperties.Bloom bloom = cacheProperties.getBloom();
+        if (!bloom.isEnabled()) {
+            return;
+        }
+        for (CacheProperties.BloomSpec spec : bloom.getFilters()) {
+            BloomFilter filter = new BloomFilter(spec.getExpectedInsertions(), spec.getFpp());
+            // key中带上位数和哈希次数，修改配置后会自动使用新的key并重建；前缀作为hash tag，相关的key在同一个slot
+            String key = BLOOM_KEY + "{" + spec.getPrefix() + "}" + filter.getNumBits() + ":" + filter.getNumHashFunctions();
+            Entry entry = new Entry(spec, key, filter);
+            filters.put(spec.getPrefix(), entry);
+            for (String alias : spec.getAliases()) {
+                aliases.put(alias, entry);
+            }
+        }
+        // 其他实例新增id或重建后，同步更新本地副本
+        listenerContainer.addMessageListener(
+                (message, pattern) -> onSync(new String(message.getBody(), StandardCharsets.UTF_8)),
+                new ChannelTopic(BLOOM_SYNC_CHANNEL));
+        // 定时检查版本号，丢失广播消息时才从redis整体加载
+        long interval = bloom.getReloadInterval().toMillis();
+        reloadExecutor.scheduleWithFixedDelay(this::reloadIfChanged, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 注册id的分页加载方法，redis中已有数据则直接加载，否则从数据库全量重建
+     * @param idPageLoader 参数是上一页最后一个id，返回按id升序排列的下一页id，没有数据时返回空集合
+     */
+    public void register(String keyPrefix, Function<Long, List<Long>> idPageLoader) {
+        Entry entry = entryOf(keyPrefix);
+        if (entry == null) {
+            return;
+        }
+        entry.idPageLoader = idPageLoader;
+        if (!reload(entry)) {
+            rebuild(keyPrefix);
+        }
+    }
+
+    /**
+     * 判断id是否可能存在，未配置或尚未加载完成的过滤器一律放行
+     */
+    public boolean mightContain(String keyPrefix, Object id) {
+        Entry entry = entryOf(keyPrefix);
+        if (entry == null || !entry.ready) {
+            return true;
+        }
+        return entry.filter.mightContain(id);
+    }
+
+    /**
+     * 新增数据后调用，写入redis并通知所有实例；重建期间同时写入重建中的临时key，rename后不会丢失
+     */
+    public void add(String keyPrefix, Object id) {
+        Entry entry = entryOf(keyPrefix);
+        if (entry == null || id == null) {
+            return;
+        }
+        String[] offsets = Arrays.stream(entry.filter.offsets(id)).mapToObj(String::valueOf).toArray(String[]::new);
+        luaScripts.execute(LuaScripts.BLOOM_ADD,
+                Arrays.asList(entry.key, entry.tmpKey(), entry.rebuildingKey(), entry.versionKey()), offsets);
+        entry.filter.put(id);
+        stringRedisTemplate.convertAndSend(BLOOM_SYNC_CHANNEL, entry.spec.getPrefix() + "|" + id);
+    }
+
+    /**
+     * 从数据库全量重建，先写入临时key再rename，重建期间不影响查询
+     * 重建期间的新增由bloom_add.lua同时写入临时key，和数据库中读到的id合并后再rename
+     */
+    public void rebuild(String keyPrefix) {
+        Entry entry = entryOf(keyPrefix);
+        if (entry == null || entry.idPageLoader == null) {
+            return;
+        }
+        // 1.标记重建中，之后的新增同时写入临时key；其他实例正在重建时跳过，等它完成后的通知
+        Boolean marked = stringRedisTemplate.opsForValue()
+                .setIfAbsent(entry.rebuildingKey(), "1", REBUILD_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+        if (!Boolean.TRUE.equals(marked)) {
+            log.info("布隆过滤器正在其他实例重建, prefix: {}", keyPrefix);
+            return;
+        }
+        long begin = System.currentTimeMillis();
+        long count = 0;
+        try {
+            stringRedisTemplate.delete(entry.tmpKey());
+            // 2.分页读取所有id，写入一个新的过滤器
+            BloomFilter rebuilt = new BloomFilter(entry.spec.getExpectedInsertions(), entry.spec.getFpp());
+            long lastId = 0;
+            while (true) {
+                List<Long> ids = entry.idPageLoader.apply(lastId);
+                if (ids == null || ids.isEmpty()) {
+                    break;
+                }
+                for (Long id : ids) {
+                    rebuilt.put(id);
+                }
+                count += ids.size();
+                lastId = ids.get(ids.size() - 1);
+            }
+            // 3.写入redis，和重建期间新增的位合并（BITOP OR）到临时key后再rename
+            byte[] bytes = rebuilt.toRedisBytes();
+            byte[] baseKey = (entry.key + ":base").getBytes(StandardCharsets.UTF_8);
+            byte[] tmpKey = entry.tmpKey().getBytes(StandardCharsets.UTF_8);
+            byte[] key = entry.key.getBytes(StandardCharsets.UTF_8);
+            stringRedisTemplate.execute((RedisCallback<Object>) connection -> {
+                connection.set(baseKey, bytes);
+                connection.bitOp(RedisStringCommands.BitOperation.OR, tmpKey, tmpKey, baseKey);
+                connection.rename(tmpKey, key);
+                connection.del(baseKey);
+                return null;
+            });
+            stringRedisTemplate.opsForValue().increment(entry.versionKey());
+        } finally {
+            stringRedisTemplate.delete(entry.rebuildingKey());
+            // rename和删除标记之间的新增会重新创建临时key，这里一起删除
+            stringRedisTemplate.delete(entry.tmpKey());
+        }
+        // 4.从redis加载本地副本（包含重建期间的新增）并通知其他实例重新加载
+        reload(entry);
+        entry.elements = count;
+        stringRedisTemplate.convertAndSend(BLOOM_SYNC_CHANNEL, entry.spec.getPrefix() + "|" + RELOAD_ALL);
+        log.info("布隆过滤器重建完成, prefix: {}, 数量: {}, 耗时: {}ms",
+                keyPrefix, count, System.currentTimeMillis() - begin);
+    }
+
+    /**
+     * 各过滤器的配置、内存占用和估算误判率
+     */
+    public Map<String, Map<String, Object>> stats() {
+        Map<String, Map<String, Object>> result = new LinkedHashMap<>();
+        filters.forEach((prefix, entry) -> {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("key", entry.key);
+            map.put("ready", entry.ready);
+            map.put("expectedInsertions", entry.spec.getExpectedInsertions());
+            map.put("configuredFpp", entry.spec.getFpp());
+            map.put("numBits", entry.filter.getNumBits());
+            map.put("numHashFunctions", entry.filter.getNumHashFunctions());
+            map.put("memoryBytes", (entry.filter.getNumBits() + 7) >>> 3);
+            map.put("lastRebuildElements", entry.elements);
+            map.put("bitCount", entry.filter.bitCount());
+            map.put("estimatedFpp", entry.filter.expectedFpp());
+            result.put(prefix, map);
+        });
+        return result;
+    }
+
+    /**
+     * 按主前缀或别名查找过滤器
+     */
+    private Entry entryOf(String keyPrefix) {
+        Entry entry = filters.get(keyPrefix);
+        return entry != null ? entry : aliases.get(keyPrefix);
+    }
+
+    private void onSync(String message) {
+        int index = message.lastIndexOf('|');
+        if (index < 0) {
+            return;
+        }
+        Entry entry = filters.get(message.substring(0, index));
+        if (entry == null) {
+            return;
+        }
+        String id = message.substring(index + 1);
+        if (RELOAD_ALL.equals(id)) {
+            reload(entry);
+        } else {
+            entry.filter.put(id);
+            // 每条新增消息对应redis中版本号加1
+            entry.version.incrementAndGet();
+        }
+    }
+
+    /**
+     * 只读取版本号，和本地不一致时才重新加载bitmap
+     */
+    private void reloadIfChanged() {
+        for (Entry entry : filters.values()) {
+            try {
+                String version = stringRedisTemplate.opsForValue().get(entry.versionKey());
+                if (!entry.ready || parseVersion(version) != entry.version.get()) {
+                    reload(entry);
+                }
+            } catch (Exception e) {
+                log.error("布隆过滤器加载失败, key: {}", entry.key, e);
+            }
+        }
+    }
+
+    /**
+     * 从redis加载位数据到本地，先读版本号再读bitmap，本地的版本号不会比位数据新
+     * @return redis中是否存在该过滤器
+     */
+    private boolean reload(Entry entry) {
+        long version = parseVersion(stringRedisTemplate.opsForValue().get(entry.versionKey()));
+        byte[] key = entry.key.getBytes(StandardCharsets.UTF_8);
+        byte[] bytes = stringRedisTemplate.execute((RedisCallback<byte[]>) connection -> connection.get(key));
+        if (bytes == null) {
+            return false;
+        }
+        entry.filter.loadRedisBytes(bytes);
+        entry.version.set(version);
+        entry.ready = true;
+        return true;
+    }
+
+    private static long parseVersion(String version) {
+        return version == null ? 0 : Long.parseLong(version);
+    }
+
+    @PreDestroy
+    private void destroy() {
+        reloadExecutor.shutdownNow();
+    }
+
+    private static class Entry {
+        private final CacheProperties.BloomSpec spec;
+        private final String key;
+        private final BloomFilter filter;
+        private volatile Function<Long, List<Long>> idPageLoader;
+        private volatile boolean ready;
+        private volatile long elements;
+        /**
+         * 本地副本对应的redis版本号
+         */
+        private final AtomicLong version = new AtomicLong();
+
+        private Entry(CacheProperties.BloomSpec spec, String key, BloomFilter filter) {
+            this.spec = spec;
+            this.key = key;
+            this.filter = filter;
+        }
+
+        private String tmpKey() {
+            return key + ":tmp";
+        }
+
+        private String rebuildingKey() {
+            return key + ":rebuilding";
+        }
+
+        private String versionKey() {
+            return key + ":version";
+        }
+    }
+}
@@ -1,169 +1,1060 @@
 package com.hmdp.utils;
 
+import cn.hutool.cache.CacheUtil;
+import cn.hutool.cache.impl.LRUCache;
 import cn.hutool.core.util.BooleanUtil;
-import cn.hutool.core.util.StrUtil;
-import cn.hutool.json.JSONObject;
-import cn.hutool.json.JSONUtil;
+import com.hmdp.config.CacheProperties;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.stereotype.Component;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.time.LocalDateTime;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BooleanSupplier;
 import java.util.function.Function;
+import java.util.function.ObjLongConsumer;
+import java.util.stream.Collectors;
 
+import static com.hmdp.utils.RedisConstants.CACHE_INVALIDATE_CHANNEL;
 import static com.hmdp.utils.RedisConstants.CACHE_NULL_TTL;
-import static com.hmdp.utils.RedisConstants.LOCK_SHOP_KEY;
+import static com.hmdp.utils.RedisConstants.LOCK_CACHE_KEY;
 
 @Slf4j
 @Component
 public class CacheClient {
 
+    private static final byte[] NULL_VALUE = new byte[0];
+
+    /**
+     * 按hash保存时保留的field：逻辑过期时间、重建耗时、空值标记，以下划线开头，不会和对象字段冲突
+     */
+    private static final String HASH_EXPIRE_FIELD = "_expireTime";
+    private static final String HASH_REBUILD_COST_FIELD = "_rebuildCost";
+    private static final String HASH_NULL_FIELD = "_null";
+
     private final StringRedisTemplate stringRedisTemplate;
 
-    private static final ExecutorService CACHE_REBUILD_EXECUTOR = Executors.newFixedThreadPool(10);
+    /**
+     * 读写缓存值使用的模板，值按字节读写，具体格式由CacheCodec决定
+     */
+    private final RedisTemplate<String, byte[]> cacheRedisTemplate;
+
+    private final BloomFilters bloomFilters;
+
+    /**
+     * 写入时使用的编码
+     */
+    private final CacheCodec writeCodec;
+
+    /**
+     * 所有可用的编码，读取时按数据选择，保证切换编码期间新旧数据都能读取
+     */
+    private final List<CacheCodec> codecs;
+
+    private final CacheRebuildScheduler rebuildScheduler;
+
+    private final HotKeyDetector hotKeyDetector;
+
+    private final CacheTtlPolicy ttlPolicy;
+
+    /**
+     * 较大的值写入前压缩，读取时按首字节判断是否需要解压
+     */
+    private final CacheCompressor compressor;
+
+    /**
+     * 按key前缀划分的本地缓存（L1），只有配置过的前缀才会有
+     * 本地缓存中的对象在线程间共享，调用方拿到后不要修改
+     */
+    private final Map<String, LRUCache<String, Object>> localCaches = new ConcurrentHashMap<>();
+
+    /**
+     * 按key前缀、查询方式划分的命中统计和耗时
+     */
+    private final Map<String, Map<String, CacheStats>> stats = new ConcurrentHashMap<>();
+
+    private final MeterRegistry meterRegistry;
+
+    private final LuaScripts luaScripts;
+
+    /**
+     * 互斥锁重建时合并同一实例内的并发请求
+     */
+    private final SingleFlight singleFlight = new SingleFlight();
 
-    public CacheClient(StringRedisTemplate stringRedisTemplate) {
+    private final Duration mutexWaitTimeout;
+
+    private final Duration mutexRetryInterval;
+
+    private final CacheProperties.EarlyRefresh earlyRefresh;
+
+    public CacheClient(StringRedisTemplate stringRedisTemplate,
+                       RedisTemplate<String, byte[]> cacheRedisTemplate,
+                       RedisMessageListenerContainer listenerContainer,
+                       CacheProperties cacheProperties,
+                       BloomFilters bloomFilters,
+                       CacheRebuildScheduler rebuildScheduler,
+                       HotKeyDetector hotKeyDetector,
+                       CacheTtlPolicy ttlPolicy,
+                       CacheCompressor compressor,
+                       MeterRegistry meterRegistry,
+                       LuaScripts luaScripts,
+                       List<CacheCodec> codecs) {
         this.stringRedisTemplate = stringRedisTemplate;
+        this.cacheRedisTemplate = cacheRedisTemplate;
+        this.bloomFilters = bloomFilters;
+        this.rebuildScheduler = rebuildScheduler;
+        this.hotKeyDetector = hotKeyDetector;
+        this.ttlPolicy = ttlPolicy;
+        this.compressor = compressor;
+        this.meterRegistry = meterRegistry;
+        this.luaScripts = luaScripts;
+        this.codecs = codecs;
+        this.writeCodec = codecs.stream()
+                .filter(codec -> codec.name().equals(cacheProperties.getCodec()))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("未知的缓存编码: " + cacheProperties.getCodec()));
+        this.mutexWaitTimeout = cacheProperties.getMutexWaitTimeout();
+        this.mutexRetryInterval = cacheProperties.getMutexRetryInterval();
+        this.earlyRefresh = cacheProperties.getEarlyRefresh();
+        CacheProperties.Local local = cacheProperties.getLocal();
+        if (local.isEnabled()) {
+            for (CacheProperties.Spec spec : local.getSpecs()) {
+                LRUCache<String, Object> cache = CacheUtil.newLRUCache(spec.getMaximumSize(), spec.getTtl().toMillis());
+                localCaches.put(spec.getPrefix(), cache);
+                // 别名前缀的key不同，放在同一个LRU中共用容量
+                for (String alias : spec.getAliases()) {
+                    localCaches.put(alias, cache);
+                }
+            }
+        }
+        // 订阅缓存失效消息，其他实例写入或删除缓存时同步清理本地副本
+        listenerContainer.addMessageListener(
+                (message, pattern) -> evictLocal(new String(message.getBody(), StandardCharsets.UTF_8)),
+                new ChannelTopic(CACHE_INVALIDATE_CHANNEL));
     }
 
+    /**
+     * 写入缓存，实际的过期时间由CacheTtlPolicy在time的基础上随机抖动并按访问频率调整
+     */
     public void set(String key, Object value, Long time, TimeUnit unit) {
-        stringRedisTemplate.opsForValue().set(key, JSONUtil.toJsonStr(value), time, unit);
+        if (value == null) {
+            // 空值写入空值标记，和查询未命中时缓存的一致，不经过编码
+            cacheRedisTemplate.opsForValue().set(key, NULL_VALUE, CACHE_NULL_TTL, TimeUnit.MINUTES);
+            invalidate(key);
+            return;
+        }
+        long ttlMillis = ttlPolicy.ttlMillis(key, time, unit);
+        cacheRedisTemplate.opsForValue().set(key, compressor.compress(key, writeCodec.encode(value)), ttlMillis, TimeUnit.MILLISECONDS);
+        invalidate(key);
     }
 
     public void setWithLogicalExpire(String key, Object value, Long time, TimeUnit unit) {
-        // 设置逻辑过期
-        RedisData redisData = new RedisData();
-        redisData.setData(value);
-        redisData.setExpireTime(LocalDateTime.now().plusSeconds(unit.toSeconds(time)));
-        // 写入Redis
-        stringRedisTemplate.opsForValue().set(key, JSONUtil.toJsonStr(redisData));
+        setWithLogicalExpire(key, value, time, unit, null);
+    }
+
+    /**
+     * @param rebuildCost 本次查询数据库的耗时（毫秒），和数据一起保存，用于计算提前刷新的概率
+     */
+    public void setWithLogicalExpire(String key, Object value, Long time, TimeUnit unit, Long rebuildCost) {
+        // 设置逻辑过期并写入Redis
+        cacheRedisTemplate.opsForValue().set(key, encodeWithLogicalExpire(key, value, time, unit, rebuildCost));
+        invalidate(key);
+    }
+
+    /**
+     * 批量写入逻辑过期的数据，在调用线程中编码，一次pipeline写入，用于缓存预热
+     * @param values id和对应的数据
+     */
+    public void setBatchWithLogicalExpire(String keyPrefix, Map<?, ?> values, Long time, TimeUnit unit) {
+        cacheRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            values.forEach((id, value) -> connection.stringCommands().set(
+                    (keyPrefix + id).getBytes(StandardCharsets.UTF_8),
+                    encodeWithLogicalExpire(keyPrefix + id, value, time, unit, null)));
+            return null;
+        });
+        invalidate(values.keySet().stream().map(id -> keyPrefix + id).collect(Collectors.toList()));
+    }
+
+    /**
+     * 删除缓存，并通知所有实例删除本地副本
+     */
+    public void delete(String key) {
+        cacheRedisTemplate.delete(key);
+        invalidate(key);
     }
 
     public <R,ID> R queryWithPassThrough(
             String keyPrefix, ID id, Class<R> type, Function<ID, R> dbFallback, Long time, TimeUnit unit){
         String key = keyPrefix + id;
-        // 1.从redis查询商铺缓存
-        String json = stringRedisTemplate.opsForValue().get(key);
+        CacheStats cacheStats = statsOf(keyPrefix, CacheStats.PASS_THROUGH);
+        // 0.布隆过滤器判断id不存在，直接返回，不再查询redis和数据库
+        if (!bloomFilters.mightContain(keyPrefix, id)) {
+            cacheStats.recordBloomReject();
+            return null;
+        }
+        ttlPolicy.recordAccess(key);
+        // 0.1.先查本地缓存
+        Object local = getLocal(keyPrefix, key, cacheStats);
+        if (type.isInstance(local)) {
+            return type.cast(local);
+        }
+        // 1.从redis查询商铺缓存，热点key从本地短时缓存返回
+        byte[] bytes = hotKeyDetector.read(key,
+                () -> cacheStats.timeRedisGet(() -> cacheRedisTemplate.opsForValue().get(key)));
         // 2.判断是否存在
-        if (StrUtil.isNotBlank(json)) {
+        R cached = bytes == null || bytes.length == 0 ? null : decode(key, bytes, type, cacheStats);
+        if (cached != null) {
             // 3.存在，直接返回
-            return JSONUtil.toBean(json, type);
+            cacheStats.recordRedisHit();
+            putLocal(keyPrefix, key, cached);
+            return cached;
         }
         // 判断命中的是否是空值
-        if (json != null) {
+        if (bytes != null && bytes.length == 0) {
             // 返回一个错误信息
+            cacheStats.recordRedisNullHit();
             return null;
         }
+        cacheStats.recordRedisMiss();
 
         // 4.不存在，根据id查询数据库
-        R r = dbFallback.apply(id);
+        R r = cacheStats.timeDbFallback(() -> dbFallback.apply(id));
         // 5.不存在，返回错误
         if (r == null) {
             // 将空值写入redis
-            stringRedisTemplate.opsForValue().set(key, "", CACHE_NULL_TTL, TimeUnit.MINUTES);
+            cacheRedisTemplate.opsForValue().set(key, NULL_VALUE, CACHE_NULL_TTL, TimeUnit.MINUTES);
             // 返回错误信息
             return null;
         }
         // 6.存在，写入redis
         this.set(key, r, time, unit);
+        putLocal(keyPrefix, key, r);
         return r;
     }
 
     public <R, ID> R queryWithLogicalExpire(
             String keyPrefix, ID id, Class<R> type, Function<ID, R> dbFallback, Long time, TimeUnit unit) {
         String key = keyPrefix + id;
-        // 1.从redis查询商铺缓存
-        String json = stringRedisTemplate.opsForValue().get(key);
+        CacheStats cacheStats = statsOf(keyPrefix, CacheStats.LOGICAL_EXPIRE);
+        // 0.布隆过滤器判断id不存在，直接返回
+        if (!bloomFilters.mightContain(keyPrefix, id)) {
+            cacheStats.recordBloomReject();
+            return null;
+        }
+        ttlPolicy.recordAccess(key);
+        // 0.1.先查本地缓存，本地副本同样带逻辑过期时间，过期后交给redis的逻辑处理重建
+        Object local = getLocal(keyPrefix, key, cacheStats);
+        if (local instanceof RedisData) {
+            RedisData localData = (RedisData) local;
+            if (type.isInstance(localData.getData()) && localData.getExpireTime().isAfter(LocalDateTime.now())) {
+                // 临近过期时按概率提前重建，仍然返回当前数据
+                if (shouldRefreshEarly(localData)) {
+                    cacheStats.recordEarlyRefresh();
+                    rebuildAsync(cacheStats, key, id, type, localData.getExpireTime(), dbFallback, time, unit);
+                }
+                return type.cast(localData.getData());
+            }
+        }
+        // 1.从redis查询商铺缓存，热点key从本地短时缓存返回
+        byte[] bytes = hotKeyDetector.read(key,
+                () -> cacheStats.timeRedisGet(() -> cacheRedisTemplate.opsForValue().get(key)));
         // 2.判断是否存在
-        if (StrUtil.isBlank(json)) {
-            // 3.存在，直接返回
+        if (bytes == null || bytes.length == 0) {
+            // 3.不存在，直接返回
+            cacheStats.recordRedisMiss();
+            return null;
+        }
+        // 4.命中，反序列化为对象
+        RedisData redisData = decodeWithLogicalExpire(key, bytes, type, cacheStats);
+        if (redisData == null) {
+            // 无法解码（例如字段结构变化），按未命中处理并重建
+            cacheStats.recordRedisMiss();
+            rebuildAsync(cacheStats, key, id, type, null, dbFallback, time, unit);
             return null;
         }
-        // 4.命中，需要先把json反序列化为对象
-        RedisData redisData = JSONUtil.toBean(json, RedisData.class);
-        R r = JSONUtil.toBean((JSONObject) redisData.getData(), type);
+        cacheStats.recordRedisHit();
+        R r = type.cast(redisData.getData());
         LocalDateTime expireTime = redisData.getExpireTime();
         // 5.判断是否过期
         if(expireTime.isAfter(LocalDateTime.now())) {
-            // 5.1.未过期，直接返回店铺信息
+            // 5.1.未过期，直接返回店铺信息，临近过期时按概率提前重建
+            putLocal(keyPrefix, key, redisData);
+            if (shouldRefreshEarly(redisData)) {
+                cacheStats.recordEarlyRefresh();
+                rebuildAsync(cacheStats, key, id, type, expireTime, dbFallback, time, unit);
+            }
             return r;
         }
         // 5.2.已过期，需要缓存重建
         // 6.缓存重建
-        // 6.1.获取互斥锁
-        String lockKey = LOCK_SHOP_KEY + id;
-        boolean isLock = tryLock(lockKey);
-        // 6.2.判断是否获取锁成功
-        if (isLock){
-            // 6.3.成功，开启独立线程，实现缓存重建
-            CACHE_REBUILD_EXECUTOR.submit(() -> {
-                try {
-                    // 查询数据库
-                    R newR = dbFallback.apply(id);
-                    // 重建缓存
-                    this.setWithLogicalExpire(key, newR, time, unit);
-                } catch (Exception e) {
-                    throw new RuntimeException(e);
-                }finally {
-                    // 释放锁
-                    unlock(lockKey);
+        rebuildAsync(cacheStats, key, id, type, expireTime, dbFallback, time, unit);
+        // 7.返回过期的商铺信息
+        return r;
+    }
+
+    /**
+     * 批量查询逻辑过期的缓存，一次MGET查询redis，未命中的一次性查询数据库并用一次pipeline回填
+     * @param idGetter 从数据库结果中取出id，用于和入参对应
+     * @param dbBatchFallback 根据未命中的id批量查询数据库
+     * @return 按入参顺序排列的结果，不存在的id会被跳过
+     */
+    public <R, ID> List<R> queryBatchWithLogicalExpire(
+            String keyPrefix, Collection<ID> ids, Class<R> type, Function<R, ID> idGetter,
+            Function<Collection<ID>, List<R>> dbBatchFallback, Long time, TimeUnit unit) {
+        List<ID> idList = new ArrayList<>(ids);
+        if (idList.isEmpty()) {
+            return Collections.emptyList();
+        }
+        CacheStats cacheStats = statsOf(keyPrefix, CacheStats.LOGICAL_EXPIRE);
+        LocalDateTime now = LocalDateTime.now();
+        Map<ID, R> found = new HashMap<>(idList.size());
+        // 1.过滤掉布隆过滤器判断不存在的id，再查本地缓存
+        List<ID> remoteIds = new ArrayList<>(idList.size());
+        for (ID id : idList) {
+            if (!bloomFilters.mightContain(keyPrefix, id)) {
+                cacheStats.recordBloomReject();
+                continue;
+            }
+            ttlPolicy.recordAccess(keyPrefix + id);
+            Object local = getLocal(keyPrefix, keyPrefix + id, cacheStats);
+            if (local instanceof RedisData) {
+                RedisData localData = (RedisData) local;
+                if (type.isInstance(localData.getData()) && localData.getExpireTime().isAfter(now)) {
+                    found.put(id, type.cast(localData.getData()));
+                    if (shouldRefreshEarly(localData)) {
+                        cacheStats.recordEarlyRefresh();
+                        rebuildAsync(cacheStats, keyPrefix + id, id, type, localData.getExpireTime(),
+                                singleFallback(dbBatchFallback), time, unit);
+                    }
+                    continue;
                 }
-            });
+            }
+            remoteIds.add(id);
+        }
+        if (remoteIds.isEmpty()) {
+            return collectInOrder(idList, found);
+        }
+        // 2.一次MGET查询redis
+        List<String> keys = remoteIds.stream().map(id -> keyPrefix + id).collect(Collectors.toList());
+        keys.forEach(hotKeyDetector::record);
+        List<byte[]> values = cacheStats.timeRedisGet(() -> cacheRedisTemplate.opsForValue().multiGet(keys));
+        List<ID> missIds = new ArrayList<>();
+        for (int i = 0; i < remoteIds.size(); i++) {
+            ID id = remoteIds.get(i);
+            byte[] bytes = values == null ? null : values.get(i);
+            // 2.1.命中空值，说明数据库中也不存在
+            if (bytes != null && bytes.length == 0) {
+                cacheStats.recordRedisNullHit();
+                continue;
+            }
+            // 2.2.未命中或无法解码，稍后统一查询数据库
+            RedisData redisData = bytes == null ? null : decodeWithLogicalExpire(keys.get(i), bytes, type, cacheStats);
+            if (redisData == null) {
+                cacheStats.recordRedisMiss();
+                missIds.add(id);
+                continue;
+            }
+            // 2.3.命中，判断是否过期
+            cacheStats.recordRedisHit();
+            R r = type.cast(redisData.getData());
+            found.put(id, r);
+            if (redisData.getExpireTime().isAfter(now)) {
+                putLocal(keyPrefix, keys.get(i), redisData);
+                if (shouldRefreshEarly(redisData)) {
+                    cacheStats.recordEarlyRefresh();
+                    rebuildAsync(cacheStats, keys.get(i), id, type, redisData.getExpireTime(),
+                            singleFallback(dbBatchFallback), time, unit);
+                }
+            } else {
+                // 已过期，先返回旧数据，异步重建
+                rebuildAsync(cacheStats, keys.get(i), id, type, redisData.getExpireTime(),
+                        singleFallback(dbBatchFallback), time, unit);
+            }
         }
-        // 6.4.返回过期的商铺信息
+        if (missIds.isEmpty()) {
+            return collectInOrder(idList, found);
+        }
+        // 3.未命中的id一次查询数据库，按数量平摊耗时作为每个key的重建耗时
+        long begin = System.currentTimeMillis();
+        List<R> loaded = cacheStats.timeDbFallback(() -> dbBatchFallback.apply(missIds));
+        long rebuildCost = (System.currentTimeMillis() - begin) / missIds.size();
+        Map<ID, R> loadedMap = new HashMap<>(loaded.size());
+        for (R r : loaded) {
+            loadedMap.put(idGetter.apply(r), r);
+        }
+        found.putAll(loadedMap);
+        // 4.一次pipeline回填redis，数据库中不存在的写入空值
+        cacheRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (ID id : missIds) {
+                byte[] rawKey = (keyPrefix + id).getBytes(StandardCharsets.UTF_8);
+                R r = loadedMap.get(id);
+                if (r == null) {
+                    connection.stringCommands().setEx(rawKey, TimeUnit.MINUTES.toSeconds(CACHE_NULL_TTL), NULL_VALUE);
+                } else {
+                    connection.stringCommands().set(rawKey,
+                            encodeWithLogicalExpire(keyPrefix + id, r, time, unit, rebuildCost));
+                }
+            }
+            return null;
+        });
+        return collectInOrder(idList, found);
+    }
+
+    private <R, ID> List<R> collectInOrder(List<ID> ids, Map<ID, R> found) {
+        List<R> result = new ArrayList<>(ids.size());
+        for (ID id : ids) {
+            R r = found.get(id);
+            if (r != null) {
+                result.add(r);
+            }
+        }
+        return result;
+    }
+
+    private <R, ID> Function<ID, R> singleFallback(Function<Collection<ID>, List<R>> dbBatchFallback) {
+        return id -> {
+            List<R> list = dbBatchFallback.apply(Collections.singletonList(id));
+            return list == null || list.isEmpty() ? null : list.get(0);
+        };
+    }
+
+    /**
+     * 按hash保存逻辑过期的数据，对象的每个字段对应一个field，可以只读取或只更新部分字段
+     * @param rebuildCost 本次查询数据库的耗时（毫秒），null表示未知
+     */
+    public void setHashWithLogicalExpire(String key, Object value, Long time, TimeUnit unit, Long rebuildCost) {
+        writeHashes(Collections.singletonMap(key, value), time, unit, rebuildCost);
+        invalidate(key);
+    }
+
+    /**
+     * 批量按hash写入逻辑过期的数据，一次pipeline写入，用于缓存预热
+     * @param values id和对应的数据
+     */
+    public void setHashBatchWithLogicalExpire(String keyPrefix, Map<?, ?> values, Long time, TimeUnit unit) {
+        Map<String, Object> hashes = new HashMap<>(values.size());
+        values.forEach((id, value) -> hashes.put(keyPrefix + id, value));
+        writeHashes(hashes, time, unit, null);
+        invalidate(hashes.keySet());
+    }
+
+    /**
+     * 只更新hash中的部分字段（对象中不为null的字段），逻辑过期时间不变，并通知所有实例删除本地副本
+     * key不存在或是空值时不写入，避免留下只有部分字段的hash
+     * @return 是否更新成功，返回false时由调用方决定是否整体写入
+     */
+    public boolean updateHashFields(String key, Object partial) {
+        Map<String, String> hash = BeanHashMapper.toHash(partial);
+        if (hash.isEmpty()) {
+            return false;
+        }
+        List<String> args = new ArrayList<>(hash.size() * 2);
+        hash.forEach((field, value) -> {
+            args.add(field);
+            args.add(value);
+        });
+        Long result = luaScripts.execute(LuaScripts.HSET_IF_EXISTS, Collections.singletonList(key), args.toArray(new String[0]));
+        invalidate(key);
+        return result != null && result == 1L;
+    }
+
+    /**
+     * 和queryWithLogicalExpire相同，数据按hash保存，一次HGETALL读取
+     */
+    public <R, ID> R queryHashWithLogicalExpire(
+            String keyPrefix, ID id, Class<R> type, Function<ID, R> dbFallback, Long time, TimeUnit unit) {
+        String key = keyPrefix + id;
+        CacheStats cacheStats = statsOf(keyPrefix, CacheStats.LOGICAL_EXPIRE);
+        // 0.布隆过滤器判断id不存在，直接返回
+        if (!bloomFilters.mightContain(keyPrefix, id)) {
+            cacheStats.recordBloomReject();
+            return null;
+        }
+        ttlPolicy.recordAccess(key);
+        // 0.1.先查本地缓存
+        Object local = getLocal(keyPrefix, key, cacheStats);
+        if (local instanceof RedisData) {
+            RedisData localData = (RedisData) local;
+            if (type.isInstance(localData.getData()) && localData.getExpireTime().isAfter(LocalDateTime.now())) {
+                if (shouldRefreshEarly(localData)) {
+                    cacheStats.recordEarlyRefresh();
+                    rebuildHashAsync(cacheStats, key, id, localData.getExpireTime(), dbFallback, time, unit);
+                }
+                return type.cast(localData.getData());
+            }
+        }
+        // 1.HGETALL查询redis，热点key从本地短时缓存返回
+        Map<String, String> hash = hotKeyDetector.read(key,
+                () -> cacheStats.timeRedisGet(() -> stringRedisTemplate.<String, String>opsForHash().entries(key)));
+        // 2.判断是否存在
+        if (hash == null || hash.isEmpty()) {
+            // 3.不存在，直接返回
+            cacheStats.recordRedisMiss();
+            return null;
+        }
+        // 判断命中的是否是空值
+        if (hash.containsKey(HASH_NULL_FIELD)) {
+            cacheStats.recordRedisNullHit();
+            return null;
+        }
+        // 4.命中，转换为对象
+        RedisData redisData = decodeHash(hash, type, cacheStats);
+        if (redisData == null) {
+            // 缺少逻辑过期时间或无法转换，按未命中处理并重建
+            cacheStats.recordRedisMiss();
+            rebuildHashAsync(cacheStats, key, id, null, dbFallback, time, unit);
+            return null;
+        }
+        cacheStats.recordRedisHit();
+        R r = type.cast(redisData.getData());
+        LocalDateTime expireTime = redisData.getExpireTime();
+        // 5.判断是否过期
+        if (expireTime.isAfter(LocalDateTime.now())) {
+            // 5.1.未过期，直接返回，临近过期时按概率提前重建
+            putLocal(keyPrefix, key, redisData);
+            if (shouldRefreshEarly(redisData)) {
+                cacheStats.recordEarlyRefresh();
+                rebuildHashAsync(cacheStats, key, id, expireTime, dbFallback, time, unit);
+            }
+            return r;
+        }
+        // 5.2.已过期，异步重建，返回旧数据
+        rebuildHashAsync(cacheStats, key, id, expireTime, dbFallback, time, unit);
         return r;
     }
 
+    /**
+     * 批量查询按hash保存的数据，只读取fields中的字段，一次pipeline对每个key执行HMGET，用于列表等只展示部分字段的场景
+     * 本地缓存命中时返回完整对象；未命中的一次查询数据库，并回填完整的hash
+     * @param fields 需要的字段，返回的对象中其他字段可能为null
+     * @return 按入参顺序排列的结果，不存在的id会被跳过
+     */
+    public <R, ID> List<R> queryBatchHashFields(
+            String keyPrefix, Collection<ID> ids, Class<R> type, List<String> fields, Function<R, ID> idGetter,
+            Function<Collection<ID>, List<R>> dbBatchFallback, Long time, TimeUnit unit) {
+        List<ID> idList = new ArrayList<>(ids);
+        if (idList.isEmpty()) {
+            return Collections.emptyList();
+        }
+        CacheStats cacheStats = statsOf(keyPrefix, CacheStats.LOGICAL_EXPIRE);
+        LocalDateTime now = LocalDateTime.now();
+        Map<ID, R> found = new HashMap<>(idList.size());
+        // 1.过滤掉布隆过滤器判断不存在的id，再查本地缓存
+        List<ID> remoteIds = new ArrayList<>(idList.size());
+        for (ID id : idList) {
+            if (!bloomFilters.mightContain(keyPrefix, id)) {
+                cacheStats.recordBloomReject();
+                continue;
+            }
+            ttlPolicy.recordAccess(keyPrefix + id);
+            Object local = getLocal(keyPrefix, keyPrefix + id, cacheStats);
+            if (local instanceof RedisData) {
+                RedisData localData = (RedisData) local;
+                if (type.isInstance(localData.getData()) && localData.getExpireTime().isAfter(now)) {
+                    found.put(id, type.cast(localData.getData()));
+                    continue;
+                }
+            }
+            remoteIds.add(id);
+        }
+        if (remoteIds.isEmpty()) {
+            return collectInOrder(idList, found);
+        }
+        // 2.一次pipeline执行HMGET，除了需要的字段，还读取逻辑过期时间、重建耗时和空值标记
+        List<String> readFields = new ArrayList<>(fields);
+        readFields.add(HASH_EXPIRE_FIELD);
+        readFields.add(HASH_REBUILD_COST_FIELD);
+        readFields.add(HASH_NULL_FIELD);
+        String[] fieldArray = readFields.toArray(new String[0]);
+        List<String> keys = remoteIds.stream().map(id -> keyPrefix + id).collect(Collectors.toList());
+        keys.forEach(hotKeyDetector::record);
+        List<Object> rows = cacheStats.timeRedisGet(() -> stringRedisTemplate.executePipelined(
+                (RedisCallback<Object>) connection -> {
+                    StringRedisConnection conn = (StringRedisConnection) connection;
+                    keys.forEach(key -> conn.hMGet(key, fieldArray));
+                    return null;
+                }));
+        List<ID> missIds = new ArrayList<>();
+        for (int i = 0; i < remoteIds.size(); i++) {
+            ID id = remoteIds.get(i);
+            @SuppressWarnings("unchecked")
+            List<String> row = (List<String>) rows.get(i);
+            // 2.1.命中空值，说明数据库中也不存在
+            if (row.get(fieldArray.length - 1) != null) {
+                cacheStats.recordRedisNullHit();
+                continue;
+            }
+            Map<String, String> hash = new HashMap<>(fieldArray.length);
+            for (int j = 0; j < fieldArray.length - 1; j++) {
+                hash.put(fieldArray[j], row.get(j));
+            }
+            // 2.2.未命中（key不存在时所有字段都为null）或无法转换，稍后统一查询数据库
+            RedisData redisData = decodeHash(hash, type, cacheStats);
+            if (redisData == null) {
+                cacheStats.recordRedisMiss();
+                missIds.add(id);
+                continue;
+            }
+            // 2.3.命中，只有部分字段，不放入本地缓存
+            cacheStats.recordRedisHit();
+            found.put(id, type.cast(redisData.getData()));
+            boolean expired = !redisData.getExpireTime().isAfter(now);
+            if (expired || shouldRefreshEarly(redisData)) {
+                if (!expired) {
+                    cacheStats.recordEarlyRefresh();
+                }
+                rebuildHashAsync(cacheStats, keys.get(i), id, redisData.getExpireTime(),
+                        singleFallback(dbBatchFallback), time, unit);
+            }
+        }
+        if (missIds.isEmpty()) {
+            return collectInOrder(idList, found);
+        }
+        // 3.未命中的id一次查询数据库，按数量平摊耗时作为每个key的重建耗时
+        long begin = System.currentTimeMillis();
+        List<R> loaded = cacheStats.timeDbFallback(() -> dbBatchFallback.apply(missIds));
+        long rebuildCost = (System.currentTimeMillis() - begin) / missIds.size();
+        Map<ID, R> loadedMap = new HashMap<>(loaded.size());
+        for (R r : loaded) {
+            loadedMap.put(idGetter.apply(r), r);
+        }
+        found.putAll(loadedMap);
+        // 4.一次pipeline回填完整的hash，数据库中不存在的写入空值
+        Map<String, Object> hashes = new HashMap<>(missIds.size());
+        for (ID id : missIds) {
+            hashes.put(keyPrefix + id, loadedMap.get(id));
+        }
+        writeHashes(hashes, time, unit, rebuildCost);
+        return collectInOrder(idList, found);
+    }
+
+    /**
+     * 一次pipeline整体替换多个hash，值为null的写入带过期时间的空值
+     */
+    private void writeHashes(Map<String, ?> values, Long time, TimeUnit unit, Long rebuildCost) {
+        String script = luaScripts.source(LuaScripts.HASH_REPLACE);
+        String nullTtl = String.valueOf(TimeUnit.MINUTES.toSeconds(CACHE_NULL_TTL));
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection conn = (StringRedisConnection) connection;
+            values.forEach((key, value) -> {
+                List<String> keyAndArgs = new ArrayList<>();
+                keyAndArgs.add(key);
+                if (value == null) {
+                    keyAndArgs.add(nullTtl);
+                    keyAndArgs.add(HASH_NULL_FIELD);
+                    keyAndArgs.add("1");
+                } else {
+                    keyAndArgs.add("0");
+                    encodeHashWithLogicalExpire(key, value, time, unit, rebuildCost).forEach((field, v) -> {
+                        keyAndArgs.add(field);
+                        keyAndArgs.add(v);
+                    });
+                }
+                conn.eval(script, ReturnType.INTEGER, 1, keyAndArgs.toArray(new String[0]));
+            });
+            return null;
+        });
+    }
+
+    private Map<String, String> encodeHashWithLogicalExpire(
+            String key, Object value, Long time, TimeUnit unit, Long rebuildCost) {
+        Map<String, String> hash = BeanHashMapper.toHash(value);
+        long ttlMillis = ttlPolicy.ttlMillis(key, time, unit);
+        hash.put(HASH_EXPIRE_FIELD, LocalDateTime.now().plus(ttlMillis, ChronoUnit.MILLIS).toString());
+        if (rebuildCost != null) {
+            hash.put(HASH_REBUILD_COST_FIELD, rebuildCost.toString());
+        }
+        return hash;
+    }
+
+    /**
+     * hash转换为带逻辑过期时间的RedisData，缺少逻辑过期时间或无法转换时返回null，调用方按未命中处理
+     */
+    private <R> RedisData decodeHash(Map<String, String> hash, Class<R> type, CacheStats cacheStats) {
+        String expireTime = hash.get(HASH_EXPIRE_FIELD);
+        if (expireTime == null) {
+            return null;
+        }
+        try {
+            return cacheStats.timeDecode(() -> {
+                RedisData redisData = new RedisData();
+                redisData.setExpireTime(LocalDateTime.parse(expireTime));
+                String rebuildCost = hash.get(HASH_REBUILD_COST_FIELD);
+                redisData.setRebuildCost(rebuildCost == null ? null : Long.valueOf(rebuildCost));
+                redisData.setData(BeanHashMapper.fromHash(hash, type));
+                return redisData;
+            });
+        } catch (RuntimeException e) {
+            log.warn("缓存hash转换失败, type: {}", type.getName(), e);
+            return null;
+        }
+    }
+
+    private <R, ID> void rebuildHashAsync(CacheStats cacheStats, String key, ID id, LocalDateTime observedExpireTime,
+                                          Function<ID, R> dbFallback, Long time, TimeUnit unit) {
+        submitRebuild(cacheStats, key, id, () -> isHashStale(key, observedExpireTime), dbFallback,
+                (newR, rebuildCost) -> this.setHashWithLogicalExpire(key, newR, time, unit, rebuildCost));
+    }
+
+    private boolean isHashStale(String key, LocalDateTime observedExpireTime) {
+        if (observedExpireTime == null) {
+            return true;
+        }
+        Object expireTime = stringRedisTemplate.opsForHash().get(key, HASH_EXPIRE_FIELD);
+        return expireTime == null || !LocalDateTime.parse(expireTime.toString()).isAfter(observedExpireTime);
+    }
+
+    /**
+     * 提交到共享的重建线程池，同一个key只会有一个任务，队列满时放弃，调用方继续返回旧数据
+     * @param observedExpireTime 读到的逻辑过期时间，执行前redis中的数据比它新则跳过，null表示一定重建
+     */
+    private <R, ID> void rebuildAsync(CacheStats cacheStats, String key, ID id, Class<R> type,
+                                      LocalDateTime observedExpireTime,
+                                      Function<ID, R> dbFallback, Long time, TimeUnit unit) {
+        submitRebuild(cacheStats, key, id, () -> isStale(key, type, observedExpireTime, cacheStats), dbFallback,
+                (newR, rebuildCost) -> this.setWithLogicalExpire(key, newR, time, unit, rebuildCost));
+    }
+
+    /**
+     * @param stale 执行前判断是否仍需重建
+     * @param writer 写入查询到的数据和查询耗时
+     */
+    private <R, ID> void submitRebuild(CacheStats cacheStats, String key, ID id, BooleanSupplier stale,
+                                       Function<ID, R> dbFallback, ObjLongConsumer<R> writer) {
+        rebuildScheduler.submit(key, stale, () -> {
+            // 1.获取互斥锁，失败说明其他实例正在重建；锁按完整的缓存key区分，不同前缀的相同id不会互相等待
+            String lockKey = LOCK_CACHE_KEY + key;
+            if (!tryLockAndRecord(lockKey, cacheStats)) {
+                return;
+            }
+            try {
+                cacheStats.timeRebuild(() -> {
+                    // 2.查询数据库，记录耗时
+                    long begin = System.currentTimeMillis();
+                    R newR = cacheStats.timeDbFallback(() -> dbFallback.apply(id));
+                    long rebuildCost = System.currentTimeMillis() - begin;
+                    // 3.重建缓存
+                    writer.accept(newR, rebuildCost);
+                });
+            } finally {
+                // 4.释放锁
+                unlock(lockKey);
+            }
+        });
+    }
+
+    /**
+     * 判断redis中的数据是否仍然是读到的那一版，已经被刷新过则不需要重建
+     */
+    private boolean isStale(String key, Class<?> type, LocalDateTime observedExpireTime, CacheStats cacheStats) {
+        if (observedExpireTime == null) {
+            return true;
+        }
+        byte[] bytes = cacheRedisTemplate.opsForValue().get(key);
+        RedisData current = bytes == null || bytes.length == 0
+                ? null : decodeWithLogicalExpire(key, bytes, type, cacheStats);
+        return current == null || !current.getExpireTime().isAfter(observedExpireTime);
+    }
+
+    private byte[] encodeWithLogicalExpire(String key, Object value, Long time, TimeUnit unit, Long rebuildCost) {
+        // 设置逻辑过期，过期时间同样经过随机抖动和按访问频率调整
+        long ttlMillis = ttlPolicy.ttlMillis(key, time, unit);
+        return compressor.compress(key, writeCodec.encodeWithLogicalExpire(
+                value, LocalDateTime.now().plus(ttlMillis, ChronoUnit.MILLIS), rebuildCost));
+    }
+
+    /**
+     * XFetch提前刷新：剩余时间 <= -重建耗时 * beta * ln(random) 时刷新
+     * 越接近过期、重建越慢，刷新的概率越大，同时写入的key不会在同一时刻一起重建
+     */
+    private boolean shouldRefreshEarly(RedisData redisData) {
+        if (!earlyRefresh.isEnabled()) {
+            return false;
+        }
+        Long rebuildCost = redisData.getRebuildCost();
+        long cost = rebuildCost == null ? earlyRefresh.getDefaultRebuildCost().toMillis() : rebuildCost;
+        long remaining = Duration.between(LocalDateTime.now(), redisData.getExpireTime()).toMillis();
+        double random = ThreadLocalRandom.current().nextDouble();
+        // nextDouble可能为0，此时ln为负无穷，直接刷新
+        return -cost * earlyRefresh.getBeta() * Math.log(random) >= remaining;
+    }
+
+    /**
+     * 按数据本身选择编码进行解码，无法解码时返回null，调用方按未命中处理
+     */
+    private <R> R decode(String key, byte[] raw, Class<R> type, CacheStats cacheStats) {
+        byte[] bytes = decompress(key, raw);
+        CacheCodec codec = bytes == null ? null : codecOf(bytes);
+        if (codec == null) {
+            return null;
+        }
+        try {
+            return cacheStats.timeDecode(() -> codec.decode(bytes, type));
+        } catch (RuntimeException e) {
+            log.warn("缓存解码失败, codec: {}, type: {}", codec.name(), type.getName(), e);
+            return null;
+        }
+    }
+
+    private <R> RedisData decodeWithLogicalExpire(String key, byte[] raw, Class<R> type, CacheStats cacheStats) {
+        byte[] bytes = decompress(key, raw);
+        CacheCodec codec = bytes == null ? null : codecOf(bytes);
+        if (codec == null) {
+            return null;
+        }
+        try {
+            return cacheStats.timeDecode(() -> codec.decodeWithLogicalExpire(bytes, type));
+        } catch (RuntimeException e) {
+            log.warn("缓存解码失败, codec: {}, type: {}", codec.name(), type.getName(), e);
+            return null;
+        }
+    }
+
+    /**
+     * 压缩过的数据先解压，格式错误时返回null
+     */
+    private byte[] decompress(String key, byte[] bytes) {
+        try {
+            return compressor.decompress(key, bytes);
+        } catch (RuntimeException e) {
+            log.warn("缓存解压失败, key: {}", key, e);
+            return null;
+        }
+    }
+
+    private CacheCodec codecOf(byte[] bytes) {
+        if (writeCodec.canDecode(bytes)) {
+            return writeCodec;
+        }
+        for (CacheCodec codec : codecs) {
+            if (codec.canDecode(bytes)) {
+                return codec;
+            }
+        }
+        return null;
+    }
+
     public <R, ID> R queryWithMutex(
             String keyPrefix, ID id, Class<R> type, Function<ID, R> dbFallback, Long time, TimeUnit unit) {
         String key = keyPrefix + id;
-        // 1.从redis查询商铺缓存
-        String shopJson = stringRedisTemplate.opsForValue().get(key);
+        CacheStats cacheStats = statsOf(keyPrefix, CacheStats.MUTEX);
+        // 0.布隆过滤器判断id不存在，直接返回，不再查询redis和数据库
+        if (!bloomFilters.mightContain(keyPrefix, id)) {
+            cacheStats.recordBloomReject();
+            return null;
+        }
+        ttlPolicy.recordAccess(key);
+        // 0.1.先查本地缓存
+        Object local = getLocal(keyPrefix, key, cacheStats);
+        if (type.isInstance(local)) {
+            return type.cast(local);
+        }
+        // 1.从redis查询商铺缓存，热点key从本地短时缓存返回
+        byte[] bytes = hotKeyDetector.read(key,
+                () -> cacheStats.timeRedisGet(() -> cacheRedisTemplate.opsForValue().get(key)));
         // 2.判断是否存在
-        if (StrUtil.isNotBlank(shopJson)) {
+        R cached = bytes == null || bytes.length == 0 ? null : decode(key, bytes, type, cacheStats);
+        if (cached != null) {
             // 3.存在，直接返回
-            return JSONUtil.toBean(shopJson, type);
+            cacheStats.recordRedisHit();
+            putLocal(keyPrefix, key, cached);
+            return cached;
         }
         // 判断命中的是否是空值
-        if (shopJson != null) {
+        if (bytes != null && bytes.length == 0) {
             // 返回一个错误信息
+            cacheStats.recordRedisNullHit();
             return null;
         }
+        cacheStats.recordRedisMiss();
+
+        // 4.实现缓存重建，同一实例内相同key只有一个线程去竞争互斥锁，其余线程等待它的结果
+        long timeoutMillis = mutexWaitTimeout.toMillis();
+        try {
+            return singleFlight.execute(key,
+                    () -> rebuildWithMutex(cacheStats, keyPrefix, id, type, dbFallback, time, unit, timeoutMillis),
+                    timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new RuntimeException("缓存重建超时: " + key, e);
+        }
+    }
 
-        // 4.实现缓存重建
-        // 4.1.获取互斥锁
-        String lockKey = LOCK_SHOP_KEY + id;
-        R r = null;
+    private <R, ID> R rebuildWithMutex(
+            CacheStats cacheStats, String keyPrefix, ID id, Class<R> type, Function<ID, R> dbFallback,
+            Long time, TimeUnit unit, long timeoutMillis) {
+        String key = keyPrefix + id;
+        String lockKey = LOCK_CACHE_KEY + key;
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        try {
+            // 4.1.获取互斥锁，失败说明其他实例正在重建，循环等待而不是递归
+            while (!tryLockAndRecord(lockKey, cacheStats)) {
+                // 4.2.超过等待时间则放弃
+                if (System.currentTimeMillis() >= deadline) {
+                    throw new RuntimeException("缓存重建超时: " + key);
+                }
+                // 4.3.休眠后重新查询redis，其他实例重建完成就直接返回
+                Thread.sleep(mutexRetryInterval.toMillis());
+                byte[] bytes = cacheStats.timeRedisGet(() -> cacheRedisTemplate.opsForValue().get(key));
+                if (bytes != null && bytes.length == 0) {
+                    return null;
+                }
+                R r = bytes == null ? null : decode(key, bytes, type, cacheStats);
+                if (r != null) {
+                    putLocal(keyPrefix, key, r);
+                    return r;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
         try {
-            boolean isLock = tryLock(lockKey);
-            // 4.2.判断是否获取成功
-            if (!isLock) {
-                // 4.3.获取锁失败，休眠并重试
-                Thread.sleep(50);
-                return queryWithMutex(keyPrefix, id, type, dbFallback, time, unit);
-            }
-            // 4.4.获取锁成功，根据id查询数据库
-            r = dbFallback.apply(id);
+            // 4.4.获取锁成功后再查一次redis，上一个持有锁的线程或实例可能刚写入缓存并释放锁
+            byte[] bytes = cacheStats.timeRedisGet(() -> cacheRedisTemplate.opsForValue().get(key));
+            if (bytes != null && bytes.length == 0) {
+                return null;
+            }
+            R cached = bytes == null ? null : decode(key, bytes, type, cacheStats);
+            if (cached != null) {
+                putLocal(keyPrefix, key, cached);
+                return cached;
+            }
+            // 4.5.仍然没有，根据id查询数据库
+            R r = cacheStats.timeDbFallback(() -> dbFallback.apply(id));
             // 5.不存在，返回错误
             if (r == null) {
                 // 将空值写入redis
-                stringRedisTemplate.opsForValue().set(key, "", CACHE_NULL_TTL, TimeUnit.MINUTES);
+                cacheRedisTemplate.opsForValue().set(key, NULL_VALUE, CACHE_NULL_TTL, TimeUnit.MINUTES);
                 // 返回错误信息
                 return null;
             }
             // 6.存在，写入redis
             this.set(key, r, time, unit);
-        } catch (InterruptedException e) {
-            throw new RuntimeException(e);
-        }finally {
-            // 7.释放锁
+            putLocal(keyPrefix, key, r);
+            // 7.返回
+            return r;
+        } finally {
+            // 8.释放锁
             unlock(lockKey);
         }
-        // 8.返回
-        return r;
+    }
+
+    /**
+     * 缓存重建时请求合并的统计
+     */
+    public Map<String, Long> singleFlightStats() {
+        return singleFlight.stats();
+    }
+
+    /**
+     * 各key前缀的压缩率和压缩、解压耗时
+     */
+    public Map<String, Map<String, Object>> compressionStats() {
+        return compressor.stats();
+    }
+
+    /**
+     * 异步重建线程池的队列长度、耗时和失败统计
+     */
+    public Map<String, Long> rebuildStats() {
+        return rebuildScheduler.stats();
+    }
+
+    /**
+     * 各key前缀、查询方式的命中统计，以及本地缓存当前的大小
+     */
+    public Map<String, Map<String, Object>> stats() {
+        Map<String, Map<String, Object>> result = new LinkedHashMap<>();
+        stats.forEach((prefix, byStrategy) -> {
+            Map<String, Object> map = new LinkedHashMap<>();
+            byStrategy.forEach((strategy, cacheStats) -> map.put(strategy, cacheStats.toMap()));
+            LRUCache<String, Object> cache = localCaches.get(prefix);
+            if (cache != null) {
+                map.put("localSize", cache.size());
+            }
+            result.put(prefix, map);
+        });
+        return result;
+    }
+
+    /**
+     * 删除本实例的本地副本，并通知所有实例删除，所有替换或删除redis中数据的写入之后调用
+     */
+    private void invalidate(String key) {
+        evictLocal(key);
+        stringRedisTemplate.convertAndSend(CACHE_INVALIDATE_CHANNEL, key);
+    }
+
+    /**
+     * 批量写入后一次pipeline发送失效通知
+     */
+    private void invalidate(Collection<String> keys) {
+        keys.forEach(this::evictLocal);
+        byte[] channel = CACHE_INVALIDATE_CHANNEL.getBytes(StandardCharsets.UTF_8);
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (String key : keys) {
+                connection.publish(channel, key.getBytes(StandardCharsets.UTF_8));
+            }
+            return null;
+        });
+    }
+
+    /**
+     * 只删除本实例的本地副本
+     */
+    public void evictLocal(String key) {
+        for (LRUCache<String, Object> cache : localCaches.values()) {
+            cache.remove(key);
+        }
+        hotKeyDetector.evict(key);
+    }
+
+    private Object getLocal(String keyPrefix, String key, CacheStats cacheStats) {
+        LRUCache<String, Object> cache = localCaches.get(keyPrefix);
+        if (cache == null) {
+            return null;
+        }
+        // 不刷新访问时间，保证本地副本从写入起最多存活ttl
+        Object value = cache.get(key, false);
+        if (value == null) {
+            cacheStats.recordLocalMiss();
+        } else {
+            cacheStats.recordLocalHit();
+        }
+        return value;
+    }
+
+    private void putLocal(String keyPrefix, String key, Object value) {
+        LRUCache<String, Object> cache = localCaches.get(keyPrefix);
+        if (cache != null) {
+            cache.put(key, value);
+        }
+    }
+
+    private CacheStats statsOf(String keyPrefix, String strategy) {
+        return stats.computeIfAbsent(keyPrefix, k -> new ConcurrentHashMap<>())
+                .computeIfAbsent(strategy, k -> new CacheStats(meterRegistry, keyPrefix, strategy));
     }
 
     private boolean tryLock(String key) {
@@ -171,6 +1062,12 @@ public class CacheClient {
         return BooleanUtil.isTrue(flag);
     }
 
+    private boolean tryLockAndRecord(String key, CacheStats cacheStats) {
+        boolean isLock = tryLock(key);
+        cacheStats.recordLock(isLock);
+        return isLock;
+    }
+
     private void unlock(String key) {
         stringRedisTemplate.delete(key);
     }
@@ -0,0 +1,36 @@
+package com.hmdp.utils;
+
+import java.time.LocalDateTime;
+
+/**
+ * 缓存值的编解码方式，CacheClient写入时使用配置的编码，读取时按数据本身选择能解码的实现
+ * 新增编码方式只需要实现该接口并注册为spring bean
+ */
+public interface CacheCodec {
+
+    /**
+     * 编码名称，对应配置 hmdp.cache.codec
+     */
+    String name();
+
+    /**
+     * 判断数据是否由当前编码写入
+     */
+    boolean canDecode(byte[] bytes);
+
+    byte[] encode(Object value);
+
+    <T> T decode(byte[] bytes, Class<T> type);
+
+    /**
+     * 编码逻辑过期的数据
+     * @param rebuildCost 重建耗时（毫秒），可以为null
+     */
+    byte[] encodeWithLogicalExpire(Object value, LocalDateTime expireTime, Long rebuildCost);
+
+    /**
+     * 解码逻辑过期的数据
+     * @return data已经转换为type类型的RedisData
+     */
+    <T> RedisData decodeWithLogicalExpire(byte[] bytes, Class<T> type);
+}
@@ -0,0 +1,183 @@
+package com.hmdp.utils;
+
+import com.hmdp.config.CacheProperties;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 缓存值压缩：编码后超过阈值的值用Deflate压缩，压缩后没有变小的保持原样
+ * 压缩格式：1字节标记 + 4字节原始长度 + Deflate数据，标记和json、二进制编码的首字节都不同，
+ * 读取时按首字节判断，压缩和未压缩的数据可以同时存在，开关和阈值可以随时调整
+ * 按key前缀统计压缩率和压缩、解压耗时，注册到micrometer：
+ * cache.compression.values{prefix, result}、cache.compression.bytes{prefix, type}、cache.compression.ratio{prefix}、
+ * cache.compress{prefix}、cache.decompress{prefix}
+ */
+@Component
+public class CacheCompressor {
+
+    private static final byte MARKER = (byte) 0xC5;
+    private static final int HEADER_LENGTH = 5;
+
+    private final boolean enabled;
+
+    private final int threshold;
+
+    private final ThreadLocal<Deflater> deflaters;
+
+    private final ThreadLocal<Inflater> inflaters = ThreadLocal.withInitial(Inflater::new);
+
+    private final MeterRegistry registry;
+
+    private final Map<String, Stats> stats = new ConcurrentHashMap<>();
+
+    public CacheCompressor(CacheProperties cacheProperties, MeterRegistry registry) {
+        CacheProperties.Compression compression = cacheProperties.getCompression();
+        this.enabled = compression.isEnabled();
+        this.threshold = compression.getThreshold();
+        this.deflaters = ThreadLocal.withInitial(() -> new Deflater(compression.getLevel()));
+        this.registry = registry;
+    }
+
+    /**
+     * 超过阈值时压缩，否则返回原数据
+     * @param key 用于按前缀统计
+     */
+    public byte[] compress(String key, byte[] bytes) {
+        if (!enabled || bytes.length <= threshold) {
+            return bytes;
+        }
+        Stats s = statsOf(key);
+        long begin = System.nanoTime();
+        // 1.输出缓冲区和原数据一样大，装不下说明压缩后不会变小
+        byte[] out = new byte[bytes.length];
+        Deflater deflater = deflaters.get();
+        deflater.reset();
+        deflater.setInput(bytes);
+        deflater.finish();
+        int length = deflater.deflate(out, HEADER_LENGTH, out.length - HEADER_LENGTH);
+        boolean finished = deflater.finished();
+        s.compressTimer.record(System.nanoTime() - begin, TimeUnit.NANOSECONDS);
+        if (!finished) {
+            s.incompressible.increment();
+            return bytes;
+        }
+        // 2.写入标记和原始长度
+        out[0] = MARKER;
+        out[1] = (byte) (bytes.length >>> 24);
+        out[2] = (byte) (bytes.length >>> 16);
+        out[3] = (byte) (bytes.length >>> 8);
+        out[4] = (byte) bytes.length;
+        s.compressed.increment();
+        s.rawBytes.add(bytes.length);
+        s.compressedBytes.add(HEADER_LENGTH + length);
+        return Arrays.copyOf(out, HEADER_LENGTH + length);
+    }
+
+    /**
+     * 压缩过的数据解压，未压缩的直接返回
+     */
+    public byte[] decompress(String key, byte[] bytes) {
+        if (!isCompressed(bytes)) {
+            return bytes;
+        }
+        Stats s = statsOf(key);
+        long begin = System.nanoTime();
+        int length = (bytes[1] & 0xFF) << 24 | (bytes[2] & 0xFF) << 16 | (bytes[3] & 0xFF) << 8 | (bytes[4] & 0xFF);
+        byte[] out = new byte[length];
+        Inflater inflater = inflaters.get();
+        inflater.reset();
+        inflater.setInput(bytes, HEADER_LENGTH, bytes.length - HEADER_LENGTH);
+        try {
+            if (inflater.inflate(out) != length) {
+                throw new IllegalArgumentException("压缩数据长度不一致: " + key);
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("压缩数据格式错误: " + key, e);
+        } finally {
+            s.decompressTimer.record(System.nanoTime() - begin, TimeUnit.NANOSECONDS);
+        }
+        return out;
+    }
+
+    public static boolean isCompressed(byte[] bytes) {
+        return bytes != null && bytes.length > HEADER_LENGTH && bytes[0] == MARKER;
+    }
+
+    /**
+     * 各key前缀的压缩次数、压缩率和耗时，用于调整阈值
+     */
+    public Map<String, Map<String, Object>> stats() {
+        Map<String, Map<String, Object>> result = new LinkedHashMap<>();
+        stats.forEach((prefix, s) -> result.put(prefix, s.toMap()));
+        return result;
+    }
+
+    private Stats statsOf(String key) {
+        // 按最后一个冒号截取前缀，例如 cache:shop:1 -> cache:shop:
+        String prefix = key.substring(0, key.lastIndexOf(':') + 1);
+        return stats.computeIfAbsent(prefix, p -> new Stats(registry, p));
+    }
+
+    private static class Stats {
+        private final LongAdder compressed = new LongAdder();
+        /**
+         * 超过阈值但压缩后没有变小的次数
+         */
+        private final LongAdder incompressible = new LongAdder();
+        private final LongAdder rawBytes = new LongAdder();
+        private final LongAdder compressedBytes = new LongAdder();
+        private final Timer compressTimer;
+        private final Timer decompressTimer;
+
+        private Stats(MeterRegistry registry, String prefix) {
+            Tags tags = Tags.of("prefix", prefix);
+            FunctionCounter.builder("cache.compression.values", compressed, LongAdder::sum)
+                    .tags(tags).tag("result", "compressed").register(registry);
+            FunctionCounter.builder("cache.compression.values", incompressible, LongAdder::sum)
+                    .tags(tags).tag("result", "incompressible").register(registry);
+            FunctionCounter.builder("cache.compression.bytes", rawBytes, LongAdder::sum)
+                    .tags(tags).tag("type", "raw").register(registry);
+            FunctionCounter.builder("cache.compression.bytes", compressedBytes, LongAdder::sum)
+                    .tags(tags).tag("type", "compressed").register(registry);
+            Gauge.builder("cache.compression.ratio", this, Stats::ratio).tags(tags).register(registry);
+            this.compressTimer = Timer.builder("cache.compress").tags(tags).register(registry);
+            this.decompressTimer = Timer.builder("cache.decompress").tags(tags).register(registry);
+        }
+
+        /**
+         * 压缩后大小 / 原始大小，只统计实际压缩过的值
+         */
+        private double ratio() {
+            long raw = rawBytes.sum();
+            return raw == 0 ? 1 : (double) compressedBytes.sum() / raw;
+        }
+
+        private Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("compressed", compressed.sum());
+            map.put("incompressible", incompressible.sum());
+            map.put("rawBytes", rawBytes.sum());
+            map.put("compressedBytes", compressedBytes.sum());
+            map.put("ratio", ratio());
+            map.put("compressCount", compressTimer.count());
+            map.put("compressMeanMicros", compressTimer.mean(TimeUnit.MICROSECONDS));
+            map.put("decompressCount", decompressTimer.count());
+            map.put("decompressMeanMicros", decompressTimer.mean(TimeUnit.MICROSECONDS));
+            return map;
+        }
+    }
+}
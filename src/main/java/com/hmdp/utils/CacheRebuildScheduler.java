@@ -0,0 +1,161 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.thread.NamedThreadFactory;
+import com.hmdp.config.CacheProperties;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+
+/**
+ * 所有缓存异步重建共用的线程池
+ * 同一个key排队或执行中时不重复提交；队列有界，满了直接放弃，调用方继续返回旧数据；
+ * 任务开始执行前再判断一次是否仍需重建，已经被其他线程或实例刷新过的直接跳过
+ */
+@Slf4j
+@Component
+public class CacheRebuildScheduler {
+
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * 排队或执行中的key
+     */
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+
+    private final LongAdder submitted = new LongAdder();
+    /**
+     * 同一个key已在排队而被合并的次数
+     */
+    private final LongAdder deduplicated = new LongAdder();
+    /**
+     * 队列已满被拒绝的次数
+     */
+    private final LongAdder rejected = new LongAdder();
+    /**
+     * 执行前发现已经被刷新而跳过的次数
+     */
+    private final LongAdder skipped = new LongAdder();
+    private final LongAdder succeeded = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    /**
+     * 排队等待的总耗时，重建的总耗时和最大耗时
+     */
+    private final LongAdder queueNanos = new LongAdder();
+    private final LongAdder rebuildNanos = new LongAdder();
+    private final LongAccumulator maxRebuildNanos = new LongAccumulator(Math::max, 0);
+
+    private final Timer queueTimer;
+    private final Timer rebuildTimer;
+
+    public CacheRebuildScheduler(CacheProperties cacheProperties, MeterRegistry registry) {
+        CacheProperties.Rebuild rebuild = cacheProperties.getRebuild();
+        this.executor = new ThreadPoolExecutor(rebuild.getThreads(), rebuild.getThreads(),
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(rebuild.getQueueCapacity()),
+                new NamedThreadFactory("cache-rebuild-", true),
+                new ThreadPoolExecutor.AbortPolicy());
+        // 注册到micrometer：cache.rebuild.queue.size、cache.rebuild.tasks{result}、cache.rebuild.queue.wait、cache.rebuild.duration
+        Gauge.builder("cache.rebuild.queue.size", executor, e -> e.getQueue().size()).register(registry);
+        Gauge.builder("cache.rebuild.active", executor, ThreadPoolExecutor::getActiveCount).register(registry);
+        Gauge.builder("cache.rebuild.pending", pending, Set::size).register(registry);
+        registerCounter(registry, "submitted", submitted);
+        registerCounter(registry, "deduplicated", deduplicated);
+        registerCounter(registry, "rejected", rejected);
+        registerCounter(registry, "skipped", skipped);
+        registerCounter(registry, "succeeded", succeeded);
+        registerCounter(registry, "failed", failed);
+        this.queueTimer = Timer.builder("cache.rebuild.queue.wait").register(registry);
+        this.rebuildTimer = Timer.builder("cache.rebuild.duration").register(registry);
+    }
+
+    private static void registerCounter(MeterRegistry registry, String result, LongAdder adder) {
+        FunctionCounter.builder("cache.rebuild.tasks", adder, LongAdder::sum).tag("result", result).register(registry);
+    }
+
+    /**
+     * 提交重建任务
+     * @param stale 执行前调用，返回false说明key已经被刷新，不再重建
+     * @param rebuild 重建逻辑
+     * @return 是否成功提交，key已在排队或队列已满时返回false
+     */
+    public boolean submit(String key, BooleanSupplier stale, Runnable rebuild) {
+        // 1.同一个key只保留一个任务
+        if (!pending.add(key)) {
+            deduplicated.increment();
+            return false;
+        }
+        long submitTime = System.nanoTime();
+        try {
+            executor.execute(() -> run(key, submitTime, stale, rebuild));
+        } catch (RejectedExecutionException e) {
+            // 2.队列已满，放弃本次重建
+            pending.remove(key);
+            rejected.increment();
+            return false;
+        }
+        submitted.increment();
+        return true;
+    }
+
+    private void run(String key, long submitTime, BooleanSupplier stale, Runnable rebuild) {
+        long begin = System.nanoTime();
+        queueNanos.add(begin - submitTime);
+        queueTimer.record(begin - submitTime, TimeUnit.NANOSECONDS);
+        try {
+            // 3.执行前再次确认是否仍需重建
+            if (!stale.getAsBoolean()) {
+                skipped.increment();
+                return;
+            }
+            rebuild.run();
+            succeeded.increment();
+        } catch (Exception e) {
+            failed.increment();
+            log.error("缓存重建失败, key: {}", key, e);
+        } finally {
+            pending.remove(key);
+            long cost = System.nanoTime() - begin;
+            rebuildNanos.add(cost);
+            maxRebuildNanos.accumulate(cost);
+            rebuildTimer.record(cost, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    public Map<String, Long> stats() {
+        Map<String, Long> map = new LinkedHashMap<>();
+        map.put("queueSize", (long) executor.getQueue().size());
+        map.put("activeThreads", (long) executor.getActiveCount());
+        map.put("pending", (long) pending.size());
+        map.put("submitted", submitted.sum());
+        map.put("deduplicated", deduplicated.sum());
+        map.put("rejected", rejected.sum());
+        map.put("skipped", skipped.sum());
+        map.put("succeeded", succeeded.sum());
+        map.put("failed", failed.sum());
+        map.put("queueMillis", TimeUnit.NANOSECONDS.toMillis(queueNanos.sum()));
+        map.put("rebuildMillis", TimeUnit.NANOSECONDS.toMillis(rebuildNanos.sum()));
+        map.put("maxRebuildMillis", TimeUnit.NANOSECONDS.toMillis(maxRebuildNanos.get()));
+        return map;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,139 @@
+package com.hmdp.utils;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 单个key前缀、单种查询方式的缓存命中统计和耗时，同时注册到micrometer
+ * 计数器：cache.gets{prefix, strategy, result}、cache.lock{prefix, strategy, result}
+ * 计时器：cache.redis.get、cache.decode、cache.db.fallback、cache.rebuild
+ */
+public class CacheStats {
+
+    /**
+     * 查询方式，对应指标中的strategy标签
+     */
+    public static final String PASS_THROUGH = "pass-through";
+    public static final String MUTEX = "mutex";
+    public static final String LOGICAL_EXPIRE = "logical-expire";
+
+    /**
+     * 本地缓存（L1）命中/未命中次数
+     */
+    private final LongAdder localHit = new LongAdder();
+    private final LongAdder localMiss = new LongAdder();
+    /**
+     * redis（L2）命中/未命中次数，空值命中单独统计
+     */
+    private final LongAdder redisHit = new LongAdder();
+    private final LongAdder redisNullHit = new LongAdder();
+    private final LongAdder redisMiss = new LongAdder();
+    /**
+     * 被布隆过滤器拦截的次数
+     */
+    private final LongAdder bloomReject = new LongAdder();
+    /**
+     * 逻辑过期之前提前触发重建的次数
+     */
+    private final LongAdder earlyRefresh = new LongAdder();
+    /**
+     * 重建时获取互斥锁成功/失败的次数
+     */
+    private final LongAdder lockAcquired = new LongAdder();
+    private final LongAdder lockContended = new LongAdder();
+
+    private final Timer redisGetTimer;
+    private final Timer decodeTimer;
+    private final Timer dbFallbackTimer;
+    private final Timer rebuildTimer;
+
+    public CacheStats(MeterRegistry registry, String keyPrefix, String strategy) {
+        Tags tags = Tags.of("prefix", keyPrefix, "strategy", strategy);
+        registerCounter(registry, "cache.gets", tags, "local_hit", localHit);
+        registerCounter(registry, "cache.gets", tags, "local_miss", localMiss);
+        registerCounter(registry, "cache.gets", tags, "redis_hit", redisHit);
+        registerCounter(registry, "cache.gets", tags, "redis_null_hit", redisNullHit);
+        registerCounter(registry, "cache.gets", tags, "redis_miss", redisMiss);
+        registerCounter(registry, "cache.gets", tags, "bloom_reject", bloomReject);
+        registerCounter(registry, "cache.early.refresh", tags, "triggered", earlyRefresh);
+        registerCounter(registry, "cache.lock", tags, "acquired", lockAcquired);
+        registerCounter(registry, "cache.lock", tags, "contended", lockContended);
+        this.redisGetTimer = Timer.builder("cache.redis.get").tags(tags).register(registry);
+        this.decodeTimer = Timer.builder("cache.decode").tags(tags).register(registry);
+        this.dbFallbackTimer = Timer.builder("cache.db.fallback").tags(tags).register(registry);
+        this.rebuildTimer = Timer.builder("cache.rebuild").tags(tags).register(registry);
+    }
+
+    private static void registerCounter(MeterRegistry registry, String name, Tags tags, String result, LongAdder adder) {
+        FunctionCounter.builder(name, adder, LongAdder::sum).tags(tags).tag("result", result).register(registry);
+    }
+
+    public void recordLocalHit() {
+        localHit.increment();
+    }
+
+    public void recordLocalMiss() {
+        localMiss.increment();
+    }
+
+    public void recordRedisHit() {
+        redisHit.increment();
+    }
+
+    public void recordRedisNullHit() {
+        redisNullHit.increment();
+    }
+
+    public void recordRedisMiss() {
+        redisMiss.increment();
+    }
+
+    public void recordBloomReject() {
+        bloomReject.increment();
+    }
+
+    public void recordEarlyRefresh() {
+        earlyRefresh.increment();
+    }
+
+    public void recordLock(boolean acquired) {
+        (acquired ? lockAcquired : lockContended).increment();
+    }
+
+    public <T> T timeRedisGet(Supplier<T> supplier) {
+        return redisGetTimer.record(supplier);
+    }
+
+    public <T> T timeDecode(Supplier<T> supplier) {
+        return decodeTimer.record(supplier);
+    }
+
+    public <T> T timeDbFallback(Supplier<T> supplier) {
+        return dbFallbackTimer.record(supplier);
+    }
+
+    public void timeRebuild(Runnable runnable) {
+        rebuildTimer.record(runnable);
+    }
+
+    public Map<String, Long> toMap() {
+        Map<String, Long> map = new LinkedHashMap<>();
+        map.put("localHit", localHit.sum());
+        map.put("localMiss", localMiss.sum());
+        map.put("redisHit", redisHit.sum());
+        map.put("redisNullHit", redisNullHit.sum());
+        map.put("redisMiss", redisMiss.sum());
+        map.put("bloomReject", bloomReject.sum());
+        map.put("earlyRefresh", earlyRefresh.sum());
+        map.put("lockAcquired", lockAcquired.sum());
+        map.put("lockContended", lockContended.sum());
+        return map;
+    }
+}
@@ -0,0 +1,116 @@
+package com.hmdp.utils;
+
+import cn.hutool.cache.CacheUtil;
+import cn.hutool.cache.impl.LRUCache;
+import cn.hutool.core.thread.NamedThreadFactory;
+import com.hmdp.config.CacheProperties;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 缓存过期时间的策略，CacheClient写入时按key调整调用方传入的过期时间
+ * 1.随机抖动：在 [ttl*(1-jitter), ttl*(1+jitter)] 内随机，同时写入的key不会同时过期
+ * 2.按访问频率调整：统计窗口内访问次数多的key延长过期时间，很少访问的缩短，减少冷数据占用的redis内存
+ * 访问次数用count-min sketch统计，只会偏大，所以冷key可能被当成普通key，不会把热key当成冷key
+ * 只有统计满一个窗口的key才按冷key缩短：第一次未命中后立即写入的新key访问次数必然很少，不能据此判断为冷数据
+ */
+@Component
+public class CacheTtlPolicy {
+
+    private final double jitter;
+
+    private final CacheProperties.Adaptive adaptive;
+
+    /**
+     * 访问计数，未开启按频率调整时为null
+     */
+    private final HotKeyCounter accessCounter;
+
+    /**
+     * 窗口内第一次访问的key，过期时间为一个窗口，过期后才有完整的统计
+     */
+    private final LRUCache<String, Boolean> freshKeys;
+
+    /**
+     * 启动满一个窗口的时间，之前所有key的统计都不完整
+     */
+    private final long fullWindowAt;
+
+    private final ScheduledExecutorService rotateExecutor;
+
+    public CacheTtlPolicy(CacheProperties cacheProperties) {
+        CacheProperties.Ttl ttl = cacheProperties.getTtl();
+        this.jitter = ttl.getJitter();
+        this.adaptive = ttl.getAdaptive();
+        if (!adaptive.isEnabled()) {
+            this.accessCounter = null;
+            this.freshKeys = null;
+            this.rotateExecutor = null;
+            this.fullWindowAt = 0;
+            return;
+        }
+        // 只用来估算次数，阈值设为最大值，不收集候选key
+        this.accessCounter = new HotKeyCounter(adaptive.getBuckets(), adaptive.getDepth(), adaptive.getWidth(),
+                Long.MAX_VALUE, 0);
+        this.freshKeys = CacheUtil.newLRUCache(adaptive.getMaxFreshKeys(), adaptive.getWindow().toMillis());
+        this.fullWindowAt = System.currentTimeMillis() + adaptive.getWindow().toMillis();
+        this.rotateExecutor = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("cache-ttl-", true));
+        long interval = adaptive.getWindow().toMillis() / adaptive.getBuckets();
+        rotateExecutor.scheduleWithFixedDelay(accessCounter::rotate, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 记录一次读取
+     */
+    public void recordAccess(String key) {
+        if (accessCounter != null) {
+            // 窗口内没有访问记录的key从现在开始统计
+            if (accessCounter.estimate(key) == 0) {
+                freshKeys.put(key, Boolean.TRUE);
+            }
+            accessCounter.add(key, 1);
+        }
+    }
+
+    /**
+     * 计算key实际使用的过期时间
+     * @return 毫秒
+     */
+    public long ttlMillis(String key, long time, TimeUnit unit) {
+        double ttl = unit.toMillis(time) * frequencyFactor(key);
+        if (jitter > 0) {
+            ttl *= 1 + ThreadLocalRandom.current().nextDouble(-jitter, jitter);
+        }
+        return Math.max(1, (long) ttl);
+    }
+
+    private double frequencyFactor(String key) {
+        if (accessCounter == null) {
+            return 1;
+        }
+        long count = accessCounter.estimate(key);
+        if (count >= adaptive.getHotCount()) {
+            return adaptive.getMaxFactor();
+        }
+        if (count < adaptive.getColdCount() && hasFullWindow(key)) {
+            return adaptive.getMinFactor();
+        }
+        return 1;
+    }
+
+    private boolean hasFullWindow(String key) {
+        return System.currentTimeMillis() >= fullWindowAt && !freshKeys.containsKey(key);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (rotateExecutor != null) {
+            rotateExecutor.shutdownNow();
+        }
+    }
+}
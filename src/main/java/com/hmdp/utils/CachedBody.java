@@ -0,0 +1,56 @@
+package com.hmdp.utils;
+
+import lombok.Getter;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 序列化好的响应体和对应的ETag，直接写回响应，不需要反序列化
+ */
+@Getter
+public class CachedBody {
+
+    /**
+     * 响应体的md5，不带引号
+     */
+    private final String etag;
+
+    private final byte[] body;
+
+    public CachedBody(String etag, byte[] body) {
+        this.etag = etag;
+        this.body = body;
+    }
+
+    /**
+     * 把响应体中第一处target替换成replacement，用于合并按用户变化的字段，例如 "isLike":false
+     * 只替换字节，不重新序列化；ETag加上后缀，和原响应区分
+     * @return 找不到target时返回自身
+     */
+    public CachedBody replace(String target, String replacement, String etagSuffix) {
+        byte[] from = target.getBytes(StandardCharsets.UTF_8);
+        int index = indexOf(body, from);
+        if (index < 0) {
+            return this;
+        }
+        byte[] to = replacement.getBytes(StandardCharsets.UTF_8);
+        byte[] merged = new byte[body.length - from.length + to.length];
+        System.arraycopy(body, 0, merged, 0, index);
+        System.arraycopy(to, 0, merged, index, to.length);
+        System.arraycopy(body, index + from.length, merged, index + to.length, body.length - index - from.length);
+        return new CachedBody(etag + "-" + etagSuffix, merged);
+    }
+
+    private static int indexOf(byte[] source, byte[] target) {
+        outer:
+        for (int i = 0; i <= source.length - target.length; i++) {
+            for (int j = 0; j < target.length; j++) {
+                if (source[i + j] != target[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,117 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.lang.hash.MurmurHash;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 滑动窗口内的key访问计数，用count-min sketch估算次数，不保存每个key的计数
+ * 窗口被分成若干个桶，每个桶是一个sketch，rotate时清空最老的桶；
+ * 估算值超过阈值的key作为候选，rotate时重新估算并选出top-K
+ */
+public class HotKeyCounter {
+
+    private final int depth;
+    private final int width;
+    private final AtomicLongArray[] buckets;
+    private volatile int current;
+
+    private final long threshold;
+    private final int topK;
+
+    /**
+     * 候选key，数量有上限，防止大量key同时变热时占用过多内存
+     */
+    private final Map<String, Boolean> candidates = new ConcurrentHashMap<>();
+    private final int maxCandidates;
+
+    /**
+     * @param bucketCount 窗口分成的桶数
+     * @param depth sketch的哈希函数个数
+     * @param width 每个哈希函数的计数器个数
+     * @param threshold 窗口内的访问次数达到该值才算热点
+     * @param topK 最多保留的热点key数量
+     */
+    public HotKeyCounter(int bucketCount, int depth, int width, long threshold, int topK) {
+        this.depth = depth;
+        this.width = width;
+        this.buckets = new AtomicLongArray[bucketCount];
+        for (int i = 0; i < bucketCount; i++) {
+            buckets[i] = new AtomicLongArray(depth * width);
+        }
+        this.threshold = threshold;
+        this.topK = topK;
+        this.maxCandidates = topK * 10;
+    }
+
+    public void add(String key, long count) {
+        long[] hash = MurmurHash.hash128(key);
+        AtomicLongArray bucket = buckets[current];
+        for (int i = 0; i < depth; i++) {
+            bucket.addAndGet(i * width + index(hash, i), count);
+        }
+        if (!candidates.containsKey(key) && candidates.size() < maxCandidates && estimate(hash) >= threshold) {
+            candidates.put(key, Boolean.TRUE);
+        }
+    }
+
+    /**
+     * 估算key在整个窗口内的访问次数，只会偏大不会偏小
+     */
+    public long estimate(String key) {
+        return estimate(MurmurHash.hash128(key));
+    }
+
+    /**
+     * 窗口向前滑动一个桶，并返回当前的热点key
+     * @return 按访问次数从高到低排列的热点key及估算次数
+     */
+    public Map<String, Long> rotate() {
+        int next = (current + 1) % buckets.length;
+        AtomicLongArray oldest = buckets[next];
+        for (int i = 0; i < oldest.length(); i++) {
+            oldest.set(i, 0);
+        }
+        current = next;
+        // 重新估算候选key，访问量降下来的移出候选
+        List<Map.Entry<String, Long>> hot = new ArrayList<>();
+        for (String key : candidates.keySet()) {
+            long count = estimate(key);
+            if (count < threshold) {
+                candidates.remove(key);
+            } else {
+                hot.add(new AbstractMap.SimpleEntry<>(key, count));
+            }
+        }
+        hot.sort((a, b) -> Long.compare(b.getValue(), a.getValue()));
+        Map<String, Long> result = new LinkedHashMap<>();
+        for (int i = 0; i < hot.size() && i < topK; i++) {
+            result.put(hot.get(i).getKey(), hot.get(i).getValue());
+        }
+        return result;
+    }
+
+    private long estimate(long[] hash) {
+        long min = Long.MAX_VALUE;
+        for (int i = 0; i < depth; i++) {
+            int index = i * width + index(hash, i);
+            long sum = 0;
+            for (AtomicLongArray bucket : buckets) {
+                sum += bucket.get(index);
+            }
+            min = Math.min(min, sum);
+        }
+        return min;
+    }
+
+    private int index(long[] hash, int i) {
+        long combined = hash[0] + i * hash[1];
+        return (int) ((combined & Long.MAX_VALUE) % width);
+    }
+}
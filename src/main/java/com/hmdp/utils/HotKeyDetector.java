@@ -0,0 +1,207 @@
+package com.hmdp.utils;
+
+import cn.hutool.cache.CacheUtil;
+import cn.hutool.cache.impl.LRUCache;
+import cn.hutool.core.thread.NamedThreadFactory;
+import cn.hutool.core.util.StrUtil;
+import com.hmdp.config.CacheProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import static com.hmdp.utils.RedisConstants.HOT_KEY_CHANNEL;
+
+/**
+ * 热点key探测：对redis读取按比例采样计数，窗口内访问次数超过阈值的key提升到本地短时缓存
+ * 本实例探测到的热点key会广播给所有实例，访问量降下来后自动失去热点身份
+ */
+@Slf4j
+@Component
+public class HotKeyDetector {
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    private final boolean enabled;
+
+    private final double sampleRate;
+
+    /**
+     * 每次采样代表的访问次数
+     */
+    private final long sampleWeight;
+
+    private final HotKeyCounter counter;
+
+    /**
+     * 本实例探测到的热点key及估算的访问次数
+     */
+    private volatile Map<String, Long> localHot = Collections.emptyMap();
+
+    /**
+     * 其他实例广播的热点key及失效时间
+     */
+    private final Map<String, Long> remoteHot = new ConcurrentHashMap<>();
+
+    /**
+     * 热点key的值，存活时间很短，只用来挡住对同一个key的大量读取
+     */
+    private final LRUCache<String, Object> values;
+
+    private final long remoteTtlMillis;
+
+    private final LongAdder localHit = new LongAdder();
+
+    private final ScheduledExecutorService rotateExecutor = Executors.newSingleThreadScheduledExecutor(
+            new NamedThreadFactory("hot-key-rotate-", true));
+
+    public HotKeyDetector(StringRedisTemplate stringRedisTemplate,
+                          RedisMessageListenerContainer listenerContainer,
+                          CacheProperties cacheProperties) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        CacheProperties.HotKey hotKey = cacheProperties.getHotKey();
+        this.enabled = hotKey.isEnabled();
+        this.sampleRate = hotKey.getSampleRate();
+        this.sampleWeight = Math.max(1, Math.round(1 / sampleRate));
+        this.counter = new HotKeyCounter(hotKey.getBuckets(), hotKey.getDepth(), hotKey.getWidth(),
+                hotKey.getThreshold(), hotKey.getTopK());
+        this.values = CacheUtil.newLRUCache(hotKey.getTopK() * 4, hotKey.getLocalTtl().toMillis());
+        long interval = hotKey.getWindow().toMillis() / hotKey.getBuckets();
+        // 广播的热点两个周期内没有再次收到就失效
+        this.remoteTtlMillis = interval * 2;
+        if (!enabled) {
+            return;
+        }
+        listenerContainer.addMessageListener(
+                (message, pattern) -> onHotKeys(new String(message.getBody(), StandardCharsets.UTF_8)),
+                new ChannelTopic(HOT_KEY_CHANNEL));
+        rotateExecutor.scheduleWithFixedDelay(this::rotate, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 读取redis，热点key优先从本地短时缓存返回
+     * @param loader 实际读取redis的方法
+     */
+    @SuppressWarnings("unchecked")
+    public <V> V read(String key, Supplier<V> loader) {
+        if (!enabled) {
+            return loader.get();
+        }
+        record(key);
+        if (!isHot(key)) {
+            return loader.get();
+        }
+        Object cached = values.get(key, false);
+        if (cached != null) {
+            localHit.increment();
+            return (V) cached;
+        }
+        V value = loader.get();
+        if (value != null) {
+            values.put(key, value);
+        }
+        return value;
+    }
+
+    /**
+     * 只计数，用于不能从本地返回的读取，例如lua脚本中的库存；key可以是不在redis中的逻辑key
+     */
+    public void record(String key) {
+        if (enabled && (sampleRate >= 1 || ThreadLocalRandom.current().nextDouble() < sampleRate)) {
+            counter.add(key, sampleWeight);
+        }
+    }
+
+    public boolean isHot(String key) {
+        if (localHot.containsKey(key)) {
+            return true;
+        }
+        Long expireAt = remoteHot.get(key);
+        return expireAt != null && expireAt > System.currentTimeMillis();
+    }
+
+    /**
+     * key被修改或删除时调用，删除本地短时缓存
+     */
+    public void evict(String key) {
+        values.remove(key);
+    }
+
+    /**
+     * 当前的热点key，包括本实例探测到的和其他实例广播的
+     */
+    public List<Map<String, Object>> hotKeys() {
+        List<Map<String, Object>> result = new ArrayList<>();
+        localHot.forEach((key, count) -> {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("key", key);
+            map.put("estimatedCount", count);
+            map.put("source", "local");
+            result.add(map);
+        });
+        long now = System.currentTimeMillis();
+        remoteHot.forEach((key, expireAt) -> {
+            if (expireAt > now && !localHot.containsKey(key)) {
+                Map<String, Object> map = new LinkedHashMap<>();
+                map.put("key", key);
+                map.put("source", "remote");
+                result.add(map);
+            }
+        });
+        return result;
+    }
+
+    public long localHitCount() {
+        return localHit.sum();
+    }
+
+    private void rotate() {
+        try {
+            Map<String, Long> hot = counter.rotate();
+            // 失去热点身份的key删除本地缓存
+            for (String key : localHot.keySet()) {
+                if (!hot.containsKey(key)) {
+                    values.remove(key);
+                }
+            }
+            localHot = hot;
+            long now = System.currentTimeMillis();
+            remoteHot.values().removeIf(expireAt -> expireAt <= now);
+            if (!hot.isEmpty()) {
+                stringRedisTemplate.convertAndSend(HOT_KEY_CHANNEL, String.join("\n", hot.keySet()));
+            }
+        } catch (Exception e) {
+            log.error("热点key统计失败", e);
+        }
+    }
+
+    private void onHotKeys(String message) {
+        long expireAt = System.currentTimeMillis() + remoteTtlMillis;
+        for (String key : message.split("\n")) {
+            if (StrUtil.isNotBlank(key)) {
+                remoteHot.put(key, expireAt);
+            }
+        }
+    }
+
+    @PreDestroy
+    private void destroy() {
+        rotateExecutor.shutdownNow();
+    }
+}
@@ -0,0 +1,148 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.io.IoUtil;
+import cn.hutool.crypto.SecureUtil;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.RedisScriptingCommands;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * lua脚本注册表，启动时加载resources/lua下所有*.lua，按文件名（不含.lua）调用
+ * 调用方使用下面的脚本名常量，REQUIRED中的脚本缺少时启动失败，不会等到第一次调用才发现
+ * 1.启动时SCRIPT LOAD，之后用EVALSHA执行，只传sha1不传脚本内容
+ * 2.redis重启或切换节点后脚本缓存丢失，返回NOSCRIPT时重新加载再执行一次
+ * 3.每个脚本记录调用次数和耗时（redis.script），以及重新加载次数（redis.script.reload）
+ * 脚本都返回整数，结果为Long
+ */
+@Slf4j
+@Component
+public class LuaScripts {
+
+    private static final String LOCATION = "classpath*:lua/*.lua";
+
+    public static final String SECKILL = "seckill";
+    public static final String DEAD_LETTER = "dead_letter";
+    public static final String UNLOCK = "unlock";
+    public static final String RATE_LIMIT = "rate_limit";
+    public static final String HSET_IF_EXISTS = "hset_if_exists";
+    public static final String HASH_REPLACE = "hash_replace";
+    public static final String BLOOM_ADD = "bloom_add";
+
+    private static final List<String> REQUIRED = Arrays.asList(
+            SECKILL, DEAD_LETTER, UNLOCK, RATE_LIMIT, HSET_IF_EXISTS, HASH_REPLACE, BLOOM_ADD);
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    private final Map<String, Script> scripts;
+
+    public LuaScripts(StringRedisTemplate stringRedisTemplate, MeterRegistry meterRegistry) throws IOException {
+        this.stringRedisTemplate = stringRedisTemplate;
+        Map<String, Script> scripts = new HashMap<>();
+        for (Resource resource : new PathMatchingResourcePatternResolver().getResources(LOCATION)) {
+            String name = resource.getFilename().substring(0, resource.getFilename().length() - ".lua".length());
+            String source;
+            try (InputStream in = resource.getInputStream()) {
+                source = IoUtil.read(in, StandardCharsets.UTF_8);
+            }
+            scripts.put(name, new Script(name, source, meterRegistry));
+        }
+        List<String> missing = REQUIRED.stream().filter(name -> !scripts.containsKey(name)).collect(Collectors.toList());
+        if (!missing.isEmpty()) {
+            throw new IllegalStateException("缺少lua脚本: " + missing + ", 位置: " + LOCATION);
+        }
+        this.scripts = Collections.unmodifiableMap(scripts);
+        // 预加载，失败时第一次调用会因为NOSCRIPT重新加载
+        try {
+            stringRedisTemplate.execute((RedisCallback<Object>) connection -> {
+                for (Script script : this.scripts.values()) {
+                    connection.scriptingCommands().scriptLoad(script.bytes);
+                }
+                return null;
+            });
+            log.info("已加载lua脚本: {}", this.scripts.keySet());
+        } catch (Exception e) {
+            log.warn("预加载lua脚本失败: {}", this.scripts.keySet(), e);
+        }
+    }
+
+    /**
+     * 用EVALSHA执行脚本
+     * @param name 脚本文件名，不含.lua
+     */
+    public Long execute(String name, List<String> keys, String... args) {
+        Script script = script(name);
+        byte[][] keysAndArgs = new byte[keys.size() + args.length][];
+        for (int i = 0; i < keys.size(); i++) {
+            keysAndArgs[i] = keys.get(i).getBytes(StandardCharsets.UTF_8);
+        }
+        for (int i = 0; i < args.length; i++) {
+            keysAndArgs[keys.size() + i] = args[i].getBytes(StandardCharsets.UTF_8);
+        }
+        return script.timer.record(() -> stringRedisTemplate.execute((RedisCallback<Long>) connection -> {
+            RedisScriptingCommands commands = connection.scriptingCommands();
+            try {
+                return commands.evalSha(script.sha, ReturnType.INTEGER, keys.size(), keysAndArgs);
+            } catch (DataAccessException e) {
+                if (!String.valueOf(NestedExceptionUtils.getMostSpecificCause(e).getMessage()).contains("NOSCRIPT")) {
+                    throw e;
+                }
+                // 脚本缓存丢失，重新加载后再执行
+                log.warn("lua脚本不存在，重新加载: {}", name);
+                script.reloads.increment();
+                commands.scriptLoad(script.bytes);
+                return commands.evalSha(script.sha, ReturnType.INTEGER, keys.size(), keysAndArgs);
+            }
+        }));
+    }
+
+    /**
+     * 脚本内容，pipeline中执行时使用（pipeline中拿不到NOSCRIPT的结果，直接EVAL）
+     */
+    public String source(String name) {
+        return script(name).source;
+    }
+
+    private Script script(String name) {
+        Script script = scripts.get(name);
+        if (script == null) {
+            throw new IllegalArgumentException("未知的lua脚本: " + name);
+        }
+        return script;
+    }
+
+    private static class Script {
+        private final String source;
+        private final byte[] bytes;
+        private final String sha;
+        private final Timer timer;
+        private final Counter reloads;
+
+        private Script(String name, String source, MeterRegistry meterRegistry) {
+            this.source = source;
+            this.bytes = source.getBytes(StandardCharsets.UTF_8);
+            this.sha = SecureUtil.sha1(source);
+            this.timer = Timer.builder("redis.script").tag("script", name).register(meterRegistry);
+            this.reloads = Counter.builder("redis.script.reload").tag("script", name).register(meterRegistry);
+        }
+    }
+}
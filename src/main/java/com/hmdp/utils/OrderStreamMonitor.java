@@ -0,0 +1,197 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.thread.NamedThreadFactory;
+import com.hmdp.config.SeckillProperties;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.RedisZSetCommands;
+import org.springframework.data.redis.connection.stream.PendingMessagesSummary;
+import org.springframework.data.redis.connection.stream.StreamInfo;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static com.hmdp.utils.RedisConstants.SECKILL_ORDER_GROUP;
+
+/**
+ * stream.orders的裁剪和积压监控，后台定时执行，每个分片的stream（多个分片时为stream.orders:{k}）依次处理，
+ * 从1个stream改成多个分片后，分片之前的stream.orders在删除之前也一起处理
+ * 1.裁剪：ACK后的消息不会从stream中删除，按配置裁剪
+ *   minid：删除消费者组已经处理完的消息，保留最早的未ACK消息（没有时为最后投递的消息）之后的，并且至少保留retention时间内的
+ *   maxlen：只保留最近max-len条左右，积压超过max-len时未处理的消息也会被删除
+ * 2.指标：stream长度、消费者组还没有读取的消息数（lag）、未ACK的消息数、最早未ACK消息的时间、死信stream长度，
+ *   所有分片相加（最早未ACK消息的时间取最大值）
+ *   每次执行时查询，抓取指标时不访问redis
+ */
+@Slf4j
+@Component
+public class OrderStreamMonitor {
+
+    private static final String STRATEGY_MINID = "minid";
+    private static final String STRATEGY_MAXLEN = "maxlen";
+
+    /**
+     * redis 7之前XINFO GROUPS没有lag，用XRANGE统计，最多统计这么多条
+     */
+    private static final int LAG_SCAN_LIMIT = 10000;
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    private final SeckillProperties seckillProperties;
+
+    private final SeckillProperties.Trim trim;
+
+    private final ScheduledExecutorService executor;
+
+    private volatile long length;
+    private volatile long lag;
+    private volatile long pending;
+    private volatile long oldestPendingAge;
+    private volatile long deadLetters;
+
+    public OrderStreamMonitor(StringRedisTemplate stringRedisTemplate,
+                              SeckillProperties seckillProperties,
+                              MeterRegistry meterRegistry) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.seckillProperties = seckillProperties;
+        this.trim = seckillProperties.getTrim();
+        Gauge.builder("seckill.stream.length", this, m -> m.length).register(meterRegistry);
+        Gauge.builder("seckill.stream.lag", this, m -> m.lag).register(meterRegistry);
+        Gauge.builder("seckill.stream.pending", this, m -> m.pending).register(meterRegistry);
+        Gauge.builder("seckill.stream.pending.oldest.age", this, m -> m.oldestPendingAge)
+                .baseUnit("seconds").register(meterRegistry);
+        Gauge.builder("seckill.stream.dlq.length", this, m -> m.deadLetters).register(meterRegistry);
+        this.executor = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("seckill-stream-", true));
+        long interval = trim.getInterval().toMillis();
+        executor.scheduleWithFixedDelay(this::run, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    private void run() {
+        Stats total = new Stats();
+        for (String stream : orderStreams()) {
+            try {
+                Stats stats = new Stats();
+                stats.deadLetters = stringRedisTemplate.opsForStream().size(SeckillSegments.deadLetterKeyOf(stream));
+                String minId = refresh(stream, stats);
+                total.add(stats);
+                trim(stream, minId);
+            } catch (Exception e) {
+                log.warn("{}监控或裁剪失败", stream, e);
+            }
+        }
+        length = total.length;
+        lag = total.lag;
+        pending = total.pending;
+        oldestPendingAge = total.oldestPendingAge;
+        deadLetters = total.deadLetters;
+    }
+
+    /**
+     * 所有分片的stream，以及还没有删除的分片之前的stream（VoucherOrderServiceImpl同样会继续消费）
+     */
+    private List<String> orderStreams() {
+        int count = seckillProperties.getStreams();
+        List<String> streams = SeckillSegments.streamKeys(count);
+        String legacy = SeckillSegments.legacyStreamKey();
+        if (count > 1 && Boolean.TRUE.equals(stringRedisTemplate.hasKey(legacy))) {
+            streams.add(legacy);
+        }
+        return streams;
+    }
+
+    /**
+     * 查询一个分片的指标
+     * @return 消费者组需要保留的最小消息id，消费者组不存在时返回null
+     */
+    private String refresh(String stream, Stats stats) {
+        stats.length = stringRedisTemplate.opsForStream().size(stream);
+        StreamInfo.XInfoGroup group = stringRedisTemplate.opsForStream().groups(stream).stream()
+                .filter(g -> SECKILL_ORDER_GROUP.equals(g.groupName()))
+                .findFirst()
+                .orElse(null);
+        if (group == null) {
+            return null;
+        }
+        String lastDeliveredId = group.lastDeliveredId();
+        stats.lag = lag(stream, group);
+        PendingMessagesSummary summary = stringRedisTemplate.opsForStream().pending(stream, SECKILL_ORDER_GROUP);
+        stats.pending = summary.getTotalPendingMessages();
+        if (stats.pending == 0) {
+            return lastDeliveredId;
+        }
+        String oldest = summary.minMessageId();
+        stats.oldestPendingAge = Math.max(0, (System.currentTimeMillis() - timeOf(oldest)) / 1000);
+        return oldest;
+    }
+
+    private long lag(String stream, StreamInfo.XInfoGroup group) {
+        Object lag = group.getRaw().get("lag");
+        if (lag instanceof Number) {
+            return ((Number) lag).longValue();
+        }
+        return stringRedisTemplate.opsForStream().range(stream,
+                Range.rightUnbounded(Range.Bound.exclusive(group.lastDeliveredId())),
+                RedisZSetCommands.Limit.limit().count(LAG_SCAN_LIMIT)).size();
+    }
+
+    private void trim(String stream, String minId) {
+        if (STRATEGY_MAXLEN.equals(trim.getStrategy())) {
+            // XTRIM stream.orders:{k} MAXLEN ~ maxLen
+            Long trimmed = stringRedisTemplate.opsForStream().trim(stream, trim.getMaxLen(), true);
+            log.debug("{}按MAXLEN裁剪: {}", stream, trimmed);
+            return;
+        }
+        if (!STRATEGY_MINID.equals(trim.getStrategy()) || minId == null) {
+            return;
+        }
+        // retention时间内的消息不删除
+        long retentionTime = System.currentTimeMillis() - trim.getRetention().toMillis();
+        if (timeOf(minId) > retentionTime) {
+            minId = retentionTime + "-0";
+        }
+        String id = minId;
+        // XTRIM stream.orders:{k} MINID ~ id，需要redis 6.2
+        Object trimmed = stringRedisTemplate.execute((RedisCallback<Object>) connection -> connection.execute("XTRIM",
+                stream.getBytes(StandardCharsets.UTF_8), "MINID".getBytes(StandardCharsets.UTF_8),
+                "~".getBytes(StandardCharsets.UTF_8), id.getBytes(StandardCharsets.UTF_8)));
+        log.debug("{}按MINID {} 裁剪: {}", stream, id, trimmed);
+    }
+
+    private static class Stats {
+        long length;
+        long lag;
+        long pending;
+        long oldestPendingAge;
+        long deadLetters;
+
+        void add(Stats stats) {
+            length += stats.length;
+            lag += stats.lag;
+            pending += stats.pending;
+            oldestPendingAge = Math.max(oldestPendingAge, stats.oldestPendingAge);
+            deadLetters += stats.deadLetters;
+        }
+    }
+
+    /**
+     * 消息id的时间部分，毫秒
+     */
+    private static long timeOf(String id) {
+        int index = id.indexOf('-');
+        return Long.parseLong(index < 0 ? id : id.substring(0, index));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
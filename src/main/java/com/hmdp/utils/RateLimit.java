@@ -0,0 +1,52 @@
+package com.hmdp.utils;
+
+import java.lang.annotation.*;
+
+/**
+ * 接口限流，令牌桶算法，由RateLimitAspect执行
+ * 先经过本实例的令牌桶，本地就没有令牌时直接拒绝，不访问redis；本地通过后再用redis中的令牌桶判断（所有实例共享）
+ * 同一个方法可以加多个，例如同时按用户和全局限流，全部通过才执行；按用户、ip的先判断，全局的最后判断
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+@Repeatable(RateLimits.class)
+public @interface RateLimit {
+
+    /**
+     * 限流名称，redis key的一部分，默认 类名.方法名
+     */
+    String name() default "";
+
+    Scope scope() default Scope.GLOBAL;
+
+    /**
+     * 每秒生成的令牌数
+     */
+    double rate();
+
+    /**
+     * 桶容量，允许的突发请求数，默认等于rate
+     */
+    long capacity() default 0;
+
+    /**
+     * 被拒绝时返回的提示
+     */
+    String message() default "请求太频繁，请稍后再试";
+
+    enum Scope {
+        /**
+         * 所有请求共用一个桶
+         */
+        GLOBAL,
+        /**
+         * 每个登录用户一个桶，未登录时按ip
+         */
+        USER,
+        /**
+         * 每个ip一个桶
+         */
+        IP
+    }
+}
@@ -0,0 +1,151 @@
+package com.hmdp.utils;
+
+import cn.hutool.cache.Cache;
+import cn.hutool.cache.CacheUtil;
+import cn.hutool.core.util.StrUtil;
+import com.hmdp.config.RateLimitProperties;
+import com.hmdp.dto.UserDTO;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import javax.servlet.http.HttpServletRequest;
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static com.hmdp.utils.RedisConstants.RATE_LIMIT_KEY;
+
+/**
+ * 执行@RateLimit
+ * 1.本地令牌桶：和redis中的桶参数相同，单个实例上就超过速率的请求在所有实例上一定也超过，直接拒绝
+ * 2.redis令牌桶：rate_limit.lua原子地补充和扣减令牌，所有实例共享
+ * 拒绝时抛出RateLimitException，按限流名称和拒绝位置（local、redis）计数 rate.limit.rejected
+ * redis不可用时只按本地桶限流
+ */
+@Slf4j
+@Aspect
+@Component
+public class RateLimitAspect {
+
+    private static final String GLOBAL = "all";
+
+    private final LuaScripts luaScripts;
+
+    private final RateLimitProperties properties;
+
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * 本地令牌桶，key和redis的key相同
+     */
+    private final Cache<String, TokenBucket> localBuckets;
+
+    /**
+     * 可信代理的地址，只有直连地址是可信代理时才使用X-Forwarded-For
+     */
+    private final Set<String> trustedProxies;
+
+    public RateLimitAspect(LuaScripts luaScripts, RateLimitProperties properties, MeterRegistry meterRegistry) {
+        this.luaScripts = luaScripts;
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+        this.localBuckets = CacheUtil.newLRUCache(properties.getLocalBuckets());
+        this.trustedProxies = new HashSet<>(properties.getTrustedProxies());
+    }
+
+    @Around("@annotation(com.hmdp.utils.RateLimit) || @annotation(com.hmdp.utils.RateLimits)")
+    public Object around(ProceedingJoinPoint joinPoint) throws Throwable {
+        if (!properties.isEnabled()) {
+            return joinPoint.proceed();
+        }
+        Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+        // 范围窄的桶（用户、ip）先判断，被它拒绝的请求不会再消耗全局桶的令牌，单个用户刷不空全局配额
+        List<RateLimit> limits = AnnotatedElementUtils.findMergedRepeatableAnnotations(method, RateLimit.class).stream()
+                .sorted(Comparator.comparing(limit -> limit.scope() == RateLimit.Scope.GLOBAL))
+                .collect(Collectors.toList());
+        for (RateLimit limit : limits) {
+            String name = StrUtil.blankToDefault(limit.name(),
+                    method.getDeclaringClass().getSimpleName() + "." + method.getName());
+            if (!tryAcquire(name, limit)) {
+                throw new RateLimitException(limit.message());
+            }
+        }
+        return joinPoint.proceed();
+    }
+
+    private boolean tryAcquire(String name, RateLimit limit) {
+        String key = RATE_LIMIT_KEY + name + ":" + scopeId(limit.scope());
+        long capacity = limit.capacity() > 0 ? limit.capacity() : Math.max(1, (long) Math.ceil(limit.rate()));
+        long now = System.currentTimeMillis();
+        // 1.本地令牌桶
+        TokenBucket bucket = localBuckets.get(key, () -> new TokenBucket(limit.rate(), capacity, now));
+        if (!bucket.tryAcquire(now)) {
+            reject(name, "local");
+            return false;
+        }
+        // 2.redis令牌桶
+        try {
+            Long allowed = luaScripts.execute(LuaScripts.RATE_LIMIT, Collections.singletonList(key),
+                    String.valueOf(limit.rate() / 1000), String.valueOf(capacity), String.valueOf(now));
+            if (allowed != null && allowed == 0) {
+                reject(name, "redis");
+                return false;
+            }
+        } catch (Exception e) {
+            log.warn("redis限流失败，只按本地令牌桶限流, key: {}", key, e);
+        }
+        return true;
+    }
+
+    private void reject(String name, String where) {
+        meterRegistry.counter("rate.limit.rejected", "name", name, "where", where).increment();
+    }
+
+    private String scopeId(RateLimit.Scope scope) {
+        if (scope == RateLimit.Scope.GLOBAL) {
+            return GLOBAL;
+        }
+        if (scope == RateLimit.Scope.USER) {
+            UserDTO user = UserHolder.getUser();
+            if (user != null) {
+                return "user:" + user.getId();
+            }
+        }
+        return "ip:" + clientIp();
+    }
+
+    private String clientIp() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (!(attributes instanceof ServletRequestAttributes)) {
+            return "unknown";
+        }
+        HttpServletRequest request = ((ServletRequestAttributes) attributes).getRequest();
+        // 1.直连的不是可信代理时X-Forwarded-For是客户端自己填的，不能用，否则换个header就能绕过按ip限流
+        String remoteAddr = request.getRemoteAddr();
+        String forwarded = request.getHeader("X-Forwarded-For");
+        if (!trustedProxies.contains(remoteAddr) || StrUtil.isBlank(forwarded)) {
+            return remoteAddr;
+        }
+        // 2.从右往左跳过可信代理，第一个不可信的地址是最外层代理看到的客户端，再往左的部分客户端可以伪造
+        List<String> hops = StrUtil.split(forwarded, ',', true, true);
+        for (int i = hops.size() - 1; i >= 0; i--) {
+            if (!trustedProxies.contains(hops.get(i))) {
+                return hops.get(i);
+            }
+        }
+        return hops.isEmpty() ? remoteAddr : hops.get(0);
+    }
+}
@@ -0,0 +1,11 @@
+package com.hmdp.utils;
+
+/**
+ * 被@RateLimit拒绝，由WebExceptionAdvice返回429
+ */
+public class RateLimitException extends RuntimeException {
+
+    public RateLimitException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,14 @@
+package com.hmdp.utils;
+
+import java.lang.annotation.*;
+
+/**
+ * 同一个方法上的多个RateLimit
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface RateLimits {
+
+    RateLimit[] value();
+}
@@ -10,14 +10,38 @@ public class RedisConstants {
 
     public static final Long CACHE_SHOP_TTL = 30L;
     public static final String CACHE_SHOP_KEY = "cache:shop:";
+    public static final String CACHE_SHOP_HASH_KEY = "cache:shop:hash:";
+    public static final String CACHE_INVALIDATE_CHANNEL = "cache:invalidate";
+    public static final String CACHE_BLOG_KEY = "cache:blog:";
+    public static final String CACHE_USER_KEY = "cache:user:";
+    public static final String CACHE_SHOP_BODY_KEY = "cache:body:shop:";
+    public static final String CACHE_BLOG_BODY_KEY = "cache:body:blog:";
+    public static final Long CACHE_BLOG_BODY_TTL = 30L;
+    public static final String HOT_KEY_CHANNEL = "cache:hotkey";
+
+    public static final String BLOOM_KEY = "bloom:";
+    public static final String BLOOM_SYNC_CHANNEL = "bloom:sync";
 
     public static final String LOCK_SHOP_KEY = "lock:shop:";
     public static final Long LOCK_SHOP_TTL = 10L;
+    public static final String LOCK_CACHE_KEY = "lock:";
 
     public static final String SECKILL_STOCK_KEY = "seckill:stock:";
+    public static final String SECKILL_ORDER_KEY = "seckill:order:";
+    public static final String SECKILL_META_KEY = "seckill:meta:";
+    /**
+     * 热点统计中秒杀券使用的逻辑key，不是redis中实际存在的key（库存分段、分片后有多个库存key）
+     */
+    public static final String SECKILL_HOT_KEY = "seckill:";
+    public static final String SECKILL_SOLD_OUT_CHANNEL = "seckill:soldout";
+    public static final String SECKILL_ORDER_STREAM = "stream.orders";
+    public static final String SECKILL_ORDER_GROUP = "g1";
+    public static final String SECKILL_ORDER_DLQ = "stream.orders.dlq";
+    public static final String RATE_LIMIT_KEY = "rate:limit:";
     public static final String BLOG_LIKED_KEY = "blog:liked:";
     public static final String FEED_KEY = "feed:";
     public static final String SHOP_GEO_KEY = "shop:geo:";
     public static final String USER_SIGN_KEY = "sign:";
-    public static final String CACHE_SHOPTYPE_KEY = "cache:shop:type";
+    public static final String SHOP_TYPE_VERSION_KEY = "shop:type:version";
+    public static final String SHOP_TYPE_SYNC_CHANNEL = "shop:type:sync";
 }
@@ -8,4 +8,8 @@ import java.time.LocalDateTime;
 public class RedisData {
     private LocalDateTime expireTime;
     private Object data;
+    /**
+     * 上次重建缓存的耗时（毫秒），用于计算提前刷新的概率，没有记录时为null
+     */
+    private Long rebuildCost;
 }
@@ -0,0 +1,90 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.util.BooleanUtil;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hmdp.dto.Result;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 接口响应体缓存：保存序列化好的完整响应（Result的JSON）和内容md5生成的ETag
+ * 命中时把字节直接写回响应，客户端带的If-None-Match相同时返回304，都不需要反序列化
+ * redis中的格式：32字节的ETag + 响应体，响应体较大时压缩保存（见CacheCompressor）
+ */
+@Component
+public class ResponseBodyCache {
+
+    private static final int ETAG_LENGTH = 32;
+
+    private final RedisTemplate<String, byte[]> cacheRedisTemplate;
+
+    private final ObjectMapper objectMapper;
+
+    private final CacheClient cacheClient;
+
+    private final HotKeyDetector hotKeyDetector;
+
+    private final CacheTtlPolicy ttlPolicy;
+
+    private final CacheCompressor compressor;
+
+    public ResponseBodyCache(RedisTemplate<String, byte[]> cacheRedisTemplate,
+                             ObjectMapper objectMapper,
+                             CacheClient cacheClient,
+                             HotKeyDetector hotKeyDetector,
+                             CacheTtlPolicy ttlPolicy,
+                             CacheCompressor compressor) {
+        this.cacheRedisTemplate = cacheRedisTemplate;
+        this.objectMapper = objectMapper;
+        this.cacheClient = cacheClient;
+        this.hotKeyDetector = hotKeyDetector;
+        this.ttlPolicy = ttlPolicy;
+        this.compressor = compressor;
+    }
+
+    /**
+     * @param loader 未命中时生成响应，失败的响应（例如数据不存在）不缓存
+     */
+    public CachedBody get(String key, Supplier<Result> loader, Long time, TimeUnit unit) {
+        ttlPolicy.recordAccess(key);
+        // 1.查询redis，热点key从本地短时缓存返回
+        byte[] bytes = hotKeyDetector.read(key, () -> cacheRedisTemplate.opsForValue().get(key));
+        if (bytes != null && bytes.length > ETAG_LENGTH) {
+            // 2.命中，拆分ETag和响应体
+            return new CachedBody(new String(bytes, 0, ETAG_LENGTH, StandardCharsets.US_ASCII),
+                    compressor.decompress(key, Arrays.copyOfRange(bytes, ETAG_LENGTH, bytes.length)));
+        }
+        // 3.未命中，生成响应并序列化，和@ResponseBody使用同一个ObjectMapper，格式保持一致
+        Result result = loader.get();
+        byte[] body;
+        try {
+            body = objectMapper.writeValueAsBytes(result);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException(e);
+        }
+        String etag = DigestUtils.md5DigestAsHex(body);
+        if (BooleanUtil.isTrue(result.getSuccess())) {
+            // 4.写入redis
+            byte[] stored = compressor.compress(key, body);
+            byte[] value = new byte[ETAG_LENGTH + stored.length];
+            System.arraycopy(etag.getBytes(StandardCharsets.US_ASCII), 0, value, 0, ETAG_LENGTH);
+            System.arraycopy(stored, 0, value, ETAG_LENGTH, stored.length);
+            cacheRedisTemplate.opsForValue().set(key, value, ttlPolicy.ttlMillis(key, time, unit), TimeUnit.MILLISECONDS);
+        }
+        return new CachedBody(etag, body);
+    }
+
+    /**
+     * 数据变化时删除，并通知所有实例删除本地副本
+     */
+    public void delete(String key) {
+        cacheClient.delete(key);
+    }
+}
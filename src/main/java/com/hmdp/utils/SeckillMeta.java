@@ -0,0 +1,64 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.date.LocalDateTimeUtil;
+import com.hmdp.entity.SeckillVoucher;
+import lombok.Getter;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 秒杀券下单需要的元数据，保存在redis的hash seckill:meta:id（多个分片时为seckill:meta:id:{k}，每个用到的分片一份，见SeckillSegments）中，各实例在本地缓存
+ * 创建后不会变化：库存分段数、秒杀开始和结束时间（毫秒时间戳，seckill.lua中按这个时间判断）
+ */
+@Getter
+public class SeckillMeta {
+
+    private static final String SEGMENTS = "segments";
+    private static final String BEGIN_TIME = "beginTime";
+    private static final String END_TIME = "endTime";
+
+    private final int segments;
+
+    private final long beginTime;
+
+    private final long endTime;
+
+    public SeckillMeta(int segments, long beginTime, long endTime) {
+        this.segments = segments;
+        this.beginTime = beginTime;
+        this.endTime = endTime;
+    }
+
+    public static SeckillMeta of(SeckillVoucher voucher, int segments) {
+        return new SeckillMeta(segments,
+                LocalDateTimeUtil.toEpochMilli(voucher.getBeginTime()), LocalDateTimeUtil.toEpochMilli(voucher.getEndTime()));
+    }
+
+    /**
+     * @return hash中没有分段数时返回null
+     */
+    public static SeckillMeta fromHash(Map<Object, Object> hash) {
+        if (hash == null || hash.get(SEGMENTS) == null) {
+            return null;
+        }
+        return new SeckillMeta(Integer.parseInt(hash.get(SEGMENTS).toString()),
+                Long.parseLong(hash.get(BEGIN_TIME).toString()), Long.parseLong(hash.get(END_TIME).toString()));
+    }
+
+    public Map<String, String> toHash() {
+        Map<String, String> hash = new HashMap<>(4);
+        hash.put(SEGMENTS, String.valueOf(segments));
+        hash.put(BEGIN_TIME, String.valueOf(beginTime));
+        hash.put(END_TIME, String.valueOf(endTime));
+        return hash;
+    }
+
+    public boolean notStarted(long now) {
+        return now < beginTime;
+    }
+
+    public boolean ended(long now) {
+        return now > endTime;
+    }
+}
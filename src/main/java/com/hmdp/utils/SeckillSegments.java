@@ -0,0 +1,135 @@
+package com.hmdp.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.hmdp.utils.RedisConstants.SECKILL_META_KEY;
+import static com.hmdp.utils.RedisConstants.SECKILL_ORDER_DLQ;
+import static com.hmdp.utils.RedisConstants.SECKILL_ORDER_KEY;
+import static com.hmdp.utils.RedisConstants.SECKILL_ORDER_STREAM;
+import static com.hmdp.utils.RedisConstants.SECKILL_STOCK_KEY;
+
+/**
+ * 秒杀库存分段：库存拆成多个key（seckill:stock:id:n:{k}），每段有自己的已下单用户集合（seckill:order:id:n:{k}），
+ * 集群中不同分段落在不同节点上，一场秒杀不再集中在一个key上
+ * 用户按id固定路由到自己的分段，一人一单只在这个分段的集合中判断；自己的分段卖完后再去其他分段扣库存，
+ * 但用户仍然记录在自己分段的集合中，所以同一个用户不会在两个分段各买一次
+ * 只有1段时key中不带分段序号n
+ * <p>
+ * 集群中seckill.lua访问的key必须在同一个slot：订单消息按配置分成多个stream（stream.orders:{k}），
+ * 每个分段按 (优惠券id + 分段序号) % stream数 归属一个分片k，分段的库存、订单集合、元数据副本、订单id序列号
+ * 都带上和这个stream相同的hash tag {k}
+ * 只有1个stream（默认）时不带hash tag，和分片之前的key相同（seckill:stock:id、seckill:order:id、stream.orders），
+ * 升级后已有的秒杀券、一人一单记录和stream中未处理的订单消息继续有效；在集群中使用需要配置多个stream
+ */
+public final class SeckillSegments {
+
+    /**
+     * 订单id的序列号部分（32位）的高8位是分片序号，所以最多256个stream，每个分片每天最多2^24个订单
+     */
+    public static final int MAX_STREAMS = 256;
+
+    private static final int SHARD_SHIFT = 24;
+
+    private SeckillSegments() {
+    }
+
+    /**
+     * 把库存尽量平均拆成segments段，除不尽的部分放在前面的分段
+     */
+    public static int[] split(int stock, int segments) {
+        int[] stocks = new int[segments];
+        for (int i = 0; i < segments; i++) {
+            stocks[i] = stock / segments + (i < stock % segments ? 1 : 0);
+        }
+        return stocks;
+    }
+
+    /**
+     * 实际使用的分段数，至少1段，每段至少有1个库存
+     */
+    public static int segmentsOf(int stock, int configured) {
+        return Math.max(1, Math.min(configured, stock));
+    }
+
+    /**
+     * 用户所在的分段
+     */
+    public static int route(long userId, int segments) {
+        return (int) Math.floorMod(userId, (long) segments);
+    }
+
+    /**
+     * 分段所在的分片，同一个优惠券的相邻分段落在不同的分片上
+     */
+    public static int shard(long voucherId, int segment, int streams) {
+        return (int) Math.floorMod(voucherId + segment, (long) streams);
+    }
+
+    public static String stockKey(long voucherId, int segment, int segments, int streams) {
+        return SECKILL_STOCK_KEY + segmentId(voucherId, segment, segments) + tag(shard(voucherId, segment, streams), streams);
+    }
+
+    public static String orderKey(long voucherId, int segment, int segments, int streams) {
+        return SECKILL_ORDER_KEY + segmentId(voucherId, segment, segments) + tag(shard(voucherId, segment, streams), streams);
+    }
+
+    /**
+     * 元数据在优惠券用到的每个分片中各有一份，seckill.lua读取用户所在分片的那一份；分段0所在分片的是主副本，
+     * 不需要知道分段数就能找到
+     */
+    public static String metaKey(long voucherId, int shard, int streams) {
+        return SECKILL_META_KEY + voucherId + tag(shard, streams);
+    }
+
+    public static String streamKey(int shard, int streams) {
+        return SECKILL_ORDER_STREAM + tag(shard, streams);
+    }
+
+    /**
+     * 所有分片的订单stream
+     */
+    public static List<String> streamKeys(int streams) {
+        List<String> keys = new ArrayList<>(streams);
+        for (int i = 0; i < streams; i++) {
+            keys.add(streamKey(i, streams));
+        }
+        return keys;
+    }
+
+    /**
+     * 分片之前（只有1个stream时）使用的stream，改成多个分片后其中已经扣了库存的订单消息仍要消费完
+     */
+    public static String legacyStreamKey() {
+        return SECKILL_ORDER_STREAM;
+    }
+
+    /**
+     * 订单stream对应的死信stream，带相同的hash tag
+     */
+    public static String deadLetterKeyOf(String streamKey) {
+        return SECKILL_ORDER_DLQ + streamKey.substring(SECKILL_ORDER_STREAM.length());
+    }
+
+    /**
+     * 订单id序列号的key前缀，每个分片一个，见RedisIdWorker.countKey
+     */
+    public static String idKeyPrefix(int shard, int streams) {
+        return "order" + tag(shard, streams);
+    }
+
+    /**
+     * 加到分片序列号上的偏移量，不同分片生成的订单id不会重复
+     */
+    public static long idOffset(int shard) {
+        return (long) shard << SHARD_SHIFT;
+    }
+
+    private static String segmentId(long voucherId, int segment, int segments) {
+        return segments <= 1 ? String.valueOf(voucherId) : voucherId + ":" + segment;
+    }
+
+    private static String tag(int shard, int streams) {
+        return streams <= 1 ? "" : ":{" + shard + "}";
+    }
+}
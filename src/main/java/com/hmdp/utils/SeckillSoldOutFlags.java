@@ -0,0 +1,92 @@
+package com.hmdp.utils;
+
+import com.hmdp.config.SeckillProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.hmdp.utils.RedisConstants.SECKILL_SOLD_OUT_CHANNEL;
+
+/**
+ * 秒杀券已售罄的本地标记，标记后的下单请求直接在本地拒绝，不再生成订单id、执行lua脚本
+ * 1.lua脚本返回库存不足时标记，并通过pub/sub通知其他实例
+ * 2.补充库存后清除，同样通知其他实例
+ * pub/sub消息可能丢失，标记超过recheck时间后放过一个请求到redis重新判断，仍然售罄时重新计时，
+ * 没有返回库存不足时只清除本地标记（补充库存的实例已经通知过）
+ */
+@Slf4j
+@Component
+public class SeckillSoldOutFlags {
+
+    private static final String SOLD_OUT = "1";
+    private static final String AVAILABLE = "0";
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    private final SeckillProperties seckillProperties;
+
+    /**
+     * 售罄的秒杀券id -> 标记时间
+     */
+    private final Map<Long, Long> soldOut = new ConcurrentHashMap<>();
+
+    public SeckillSoldOutFlags(StringRedisTemplate stringRedisTemplate,
+                               SeckillProperties seckillProperties,
+                               RedisMessageListenerContainer listenerContainer) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.seckillProperties = seckillProperties;
+        // 其他实例的通知，消息格式 秒杀券id|1（售罄）或 秒杀券id|0（补充库存）
+        listenerContainer.addMessageListener((message, pattern) -> {
+            String[] parts = new String(message.getBody(), StandardCharsets.UTF_8).split("\\|");
+            Long voucherId = Long.valueOf(parts[0]);
+            if (SOLD_OUT.equals(parts[1])) {
+                soldOut.put(voucherId, System.currentTimeMillis());
+            } else {
+                soldOut.remove(voucherId);
+            }
+        }, new ChannelTopic(SECKILL_SOLD_OUT_CHANNEL));
+    }
+
+    /**
+     * 是否已售罄，超过recheck时间的标记只放过一个请求
+     */
+    public boolean isSoldOut(Long voucherId) {
+        Long markTime = soldOut.get(voucherId);
+        if (markTime == null) {
+            return false;
+        }
+        long now = System.currentTimeMillis();
+        if (now - markTime < seckillProperties.getSoldOutRecheck().toMillis()) {
+            return true;
+        }
+        // 重新计时成功的请求去redis判断
+        return !soldOut.replace(voucherId, markTime, now);
+    }
+
+    public void markSoldOut(Long voucherId) {
+        if (soldOut.put(voucherId, System.currentTimeMillis()) == null) {
+            log.info("秒杀券已售罄, voucherId: {}", voucherId);
+            stringRedisTemplate.convertAndSend(SECKILL_SOLD_OUT_CHANNEL, voucherId + "|" + SOLD_OUT);
+        }
+    }
+
+    /**
+     * 只清除本实例的标记，不通知其他实例，用于重新判断时发现已经有库存
+     */
+    public void clearLocal(Long voucherId) {
+        if (soldOut.remove(voucherId) != null) {
+            log.info("秒杀券已有库存，清除本地售罄标记, voucherId: {}", voucherId);
+        }
+    }
+
+    public void clear(Long voucherId) {
+        soldOut.remove(voucherId);
+        stringRedisTemplate.convertAndSend(SECKILL_SOLD_OUT_CHANNEL, voucherId + "|" + AVAILABLE);
+    }
+}
@@ -1,9 +1,7 @@
 package com.hmdp.utils;
 
 import cn.hutool.core.lang.UUID;
-import org.springframework.core.io.ClassPathResource;
 import org.springframework.data.redis.core.StringRedisTemplate;
-import org.springframework.data.redis.core.script.DefaultRedisScript;
 
 import java.util.Collections;
 import java.util.concurrent.TimeUnit;
@@ -12,20 +10,16 @@ public class SimpleRedisLock implements ILock {
 
     private String name;
     private StringRedisTemplate stringRedisTemplate;
+    private LuaScripts luaScripts;
 
-    public SimpleRedisLock(String name, StringRedisTemplate stringRedisTemplate) {
+    public SimpleRedisLock(String name, StringRedisTemplate stringRedisTemplate, LuaScripts luaScripts) {
         this.name = name;
         this.stringRedisTemplate = stringRedisTemplate;
+        this.luaScripts = luaScripts;
     }
 
     private static final String KEY_PREFIX = "lock:";
     private static final String ID_PREFIX = UUID.randomUUID().toString(true) + "-";
-    private static final DefaultRedisScript<Long> UNLOCK_SCRIPT;
-    static {
-        UNLOCK_SCRIPT = new DefaultRedisScript<>();
-        UNLOCK_SCRIPT.setLocation(new ClassPathResource("unlock.lua"));
-        UNLOCK_SCRIPT.setResultType(Long.class);
-    }
 
     @Override
     public boolean tryLock(long timeoutSec) {
@@ -40,8 +34,8 @@ public class SimpleRedisLock implements ILock {
     @Override
     public void unlock() {
         // 调用lua脚本
-        stringRedisTemplate.execute(
-                UNLOCK_SCRIPT,
+        luaScripts.execute(
+                LuaScripts.UNLOCK,
                 Collections.singletonList(KEY_PREFIX + name),
                 ID_PREFIX + Thread.currentThread().getId());
     }
@@ -0,0 +1,92 @@
+package com.hmdp.utils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 进程内的请求合并：同一个key同时只有一个线程执行加载，其余线程等待它的结果
+ */
+public class SingleFlight {
+
+    private final Map<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * 真正执行加载的次数
+     */
+    private final LongAdder executions = new LongAdder();
+    /**
+     * 复用了其他线程结果的次数
+     */
+    private final LongAdder shared = new LongAdder();
+    /**
+     * 等待超时的次数
+     */
+    private final LongAdder timeouts = new LongAdder();
+    /**
+     * 等待其他线程的总耗时和最大耗时
+     */
+    private final LongAdder waitNanos = new LongAdder();
+    private final LongAccumulator maxWaitNanos = new LongAccumulator(Math::max, 0);
+
+    /**
+     * 执行加载，如果已有线程在加载同一个key，则最多等待timeout后返回它的结果
+     * @throws TimeoutException 等待超时
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String key, Supplier<T> loader, long timeout, TimeUnit unit) throws TimeoutException {
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inFlight.putIfAbsent(key, future);
+        if (existing == null) {
+            // 1.当前线程负责加载
+            executions.increment();
+            try {
+                T value = loader.get();
+                future.complete(value);
+                return value;
+            } catch (RuntimeException | Error e) {
+                future.completeExceptionally(e);
+                throw e;
+            } finally {
+                inFlight.remove(key, future);
+            }
+        }
+        // 2.已有线程在加载，等待它的结果
+        shared.increment();
+        long begin = System.nanoTime();
+        try {
+            return (T) existing.get(timeout, unit);
+        } catch (TimeoutException e) {
+            timeouts.increment();
+            throw e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof RuntimeException ? (RuntimeException) cause : new RuntimeException(cause);
+        } finally {
+            long cost = System.nanoTime() - begin;
+            waitNanos.add(cost);
+            maxWaitNanos.accumulate(cost);
+        }
+    }
+
+    public Map<String, Long> stats() {
+        Map<String, Long> map = new LinkedHashMap<>();
+        map.put("inFlight", (long) inFlight.size());
+        map.put("executions", executions.sum());
+        map.put("shared", shared.sum());
+        map.put("timeouts", timeouts.sum());
+        map.put("waitMillis", TimeUnit.NANOSECONDS.toMillis(waitNanos.sum()));
+        map.put("maxWaitMillis", TimeUnit.NANOSECONDS.toMillis(maxWaitNanos.get()));
+        return map;
+    }
+}
@@ -0,0 +1,39 @@
+package com.hmdp.utils;
+
+/**
+ * 本地令牌桶，和rate_limit.lua的算法相同：按距离上次取令牌的时间补充令牌，最多补到容量
+ */
+public class TokenBucket {
+
+    private final double ratePerMillis;
+
+    private final double capacity;
+
+    private double tokens;
+
+    private long lastTime;
+
+    public TokenBucket(double rate, long capacity, long now) {
+        this.ratePerMillis = rate / 1000;
+        this.capacity = capacity;
+        this.tokens = capacity;
+        this.lastTime = now;
+    }
+
+    /**
+     * 取一个令牌
+     * @param now 当前时间，毫秒
+     * @return 是否取到
+     */
+    public synchronized boolean tryAcquire(long now) {
+        if (now > lastTime) {
+            tokens = Math.min(capacity, tokens + (now - lastTime) * ratePerMillis);
+            lastTime = now;
+        }
+        if (tokens < 1) {
+            return false;
+        }
+        tokens -= 1;
+        return true;
+    }
+}
@@ -0,0 +1,95 @@
+package com.hmdp.utils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 缓存预热的进度，同一时间只允许一次预热
+ */
+public class WarmUpProgress {
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    private volatile String status = "IDLE";
+    private volatile long total;
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong chunks = new AtomicLong();
+    private volatile long startTime;
+    private volatile long endTime;
+    private volatile String error;
+
+    /**
+     * 开始预热
+     * @param total 预计写入的数量
+     * @return 已经有预热在执行时返回false
+     */
+    public boolean start(long total) {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        this.status = "RUNNING";
+        this.total = total;
+        this.written.set(0);
+        this.chunks.set(0);
+        this.startTime = System.currentTimeMillis();
+        this.endTime = 0;
+        this.error = null;
+        return true;
+    }
+
+    /**
+     * 一批数据写入完成
+     * @return 到目前为止写入的批次数
+     */
+    public long chunkWritten(int count) {
+        written.addAndGet(count);
+        return chunks.incrementAndGet();
+    }
+
+    public void finish(Throwable e) {
+        this.endTime = System.currentTimeMillis();
+        this.status = e == null ? "DONE" : "FAILED";
+        this.error = e == null ? null : e.toString();
+        running.set(false);
+    }
+
+    public boolean isRunning() {
+        return running.get();
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public long getWritten() {
+        return written.get();
+    }
+
+    public long elapsedMillis() {
+        if (startTime == 0) {
+            return 0;
+        }
+        return (endTime == 0 ? System.currentTimeMillis() : endTime) - startTime;
+    }
+
+    /**
+     * 每秒写入的数量
+     */
+    public long throughput() {
+        return written.get() * 1000 / Math.max(1, elapsedMillis());
+    }
+
+    public Map<String, Object> toMap() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("status", status);
+        map.put("total", total);
+        map.put("written", written.get());
+        map.put("chunks", chunks.get());
+        map.put("elapsedMillis", elapsedMillis());
+        map.put("perSecond", throughput());
+        map.put("error", error);
+        return map;
+    }
+}
@@ -0,0 +1,36 @@
+-- 已有数据库升级：tb_voucher_order 增加 seckill 列和唯一索引 (user_id, voucher_id, seckill)，秒杀券一人一单由数据库保证
+-- 只有秒杀订单写入seckill=1，普通订单为NULL，唯一索引里NULL之间不冲突，普通券仍然可以重复购买
+-- 本脚本不删除任何订单：重复的秒杀订单只报告、归档到 tb_voucher_order_dup，是否删除由人工核对后单独执行第6步
+
+-- 1.执行过旧版本脚本的库，先去掉覆盖全部订单的唯一索引
+-- ALTER TABLE `tb_voucher_order` DROP INDEX `uk_user_voucher`;
+
+-- 2.加列和唯一索引，已有订单的seckill都是NULL，不会因为历史重复数据失败
+ALTER TABLE `tb_voucher_order`
+  ADD COLUMN `seckill` tinyint(1) UNSIGNED NULL DEFAULT NULL COMMENT '秒杀订单为1，普通订单为NULL（NULL不参与唯一索引冲突）' AFTER `voucher_id`,
+  ADD UNIQUE INDEX `uk_user_voucher_seckill`(`user_id`, `voucher_id`, `seckill`) USING BTREE;
+
+-- 3.报告：同一用户同一秒杀券的重复订单，keep_id是保留的订单
+SELECT o.`user_id`, o.`voucher_id`, COUNT(*) AS `orders`, MIN(o.`id`) AS `keep_id`,
+       GROUP_CONCAT(o.`id`, ':', o.`status` ORDER BY o.`id`) AS `order_id_status`
+FROM `tb_voucher_order` o
+JOIN `tb_seckill_voucher` sv ON sv.`voucher_id` = o.`voucher_id`
+GROUP BY o.`user_id`, o.`voucher_id`
+HAVING COUNT(*) > 1;
+
+-- 4.归档：每组除id最小的一条以外的重复订单复制到 tb_voucher_order_dup，原表不动
+CREATE TABLE IF NOT EXISTS `tb_voucher_order_dup` LIKE `tb_voucher_order`;
+INSERT IGNORE INTO `tb_voucher_order_dup`
+SELECT o1.* FROM `tb_voucher_order` o1
+JOIN `tb_seckill_voucher` sv ON sv.`voucher_id` = o1.`voucher_id`
+WHERE EXISTS (SELECT 1 FROM `tb_voucher_order` o2
+              WHERE o2.`user_id` = o1.`user_id` AND o2.`voucher_id` = o1.`voucher_id` AND o2.`id` < o1.`id`);
+
+-- 5.历史秒杀订单标记seckill=1，归档的重复订单保持NULL，所以不会违反唯一索引
+UPDATE `tb_voucher_order` o
+JOIN `tb_seckill_voucher` sv ON sv.`voucher_id` = o.`voucher_id`
+SET o.`seckill` = 1
+WHERE NOT EXISTS (SELECT 1 FROM `tb_voucher_order_dup` d WHERE d.`id` = o.`id`);
+
+-- 6.人工步骤：核对 tb_voucher_order_dup（已支付的先走退款）后再删除，默认不执行
+-- DELETE o FROM `tb_voucher_order` o JOIN `tb_voucher_order_dup` d ON d.`id` = o.`id`;
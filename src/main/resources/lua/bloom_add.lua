@@ -0,0 +1,11 @@
+-- 布隆过滤器新增id：设置位，重建期间同时写入重建中的临时key，最后把版本号加1
+-- KEYS[1]: 位数据key, KEYS[2]: 重建中的临时key, KEYS[3]: 重建标记, KEYS[4]: 版本号key
+-- ARGV: id对应的位偏移
+local rebuilding = redis.call('exists', KEYS[3]) == 1
+for i = 1, #ARGV do
+    redis.call('setbit', KEYS[1], ARGV[i], 1)
+    if (rebuilding) then
+        redis.call('setbit', KEYS[2], ARGV[i], 1)
+    end
+end
+return redis.call('incr', KEYS[4])
@@ -0,0 +1,19 @@
+-- 把消息移到死信stream并从消费者组的pending-list中确认
+-- 1.参数列表
+-- 1.1.原stream和死信stream，带相同的hash tag，在同一个slot
+local stream = KEYS[1]
+local dlq = KEYS[2]
+-- 1.2.消费者组、消息id、投递次数、失败原因
+local group = ARGV[1]
+local id = ARGV[2]
+local deliveries = ARGV[3]
+local reason = ARGV[4]
+
+-- 2.原消息的字段放在后面，XADD stream.orders.dlq:{k} * sourceId id deliveries n reason r k1 v1 ...
+local fields = {'sourceId', id, 'deliveries', deliveries, 'reason', reason}
+for i = 5, #ARGV do
+    table.insert(fields, ARGV[i])
+end
+redis.call('xadd', dlq, '*', unpack(fields))
+-- 3.XACK stream.orders:{k} g1 id
+return redis.call('xack', stream, group, id)
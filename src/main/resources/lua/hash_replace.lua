@@ -0,0 +1,8 @@
+-- 整体替换hash的内容，删除和写入在同一个脚本中，读取时不会看到只写了一半的数据
+-- KEYS[1]: key, ARGV[1]: 过期时间（秒），0表示不过期, ARGV[2..]: field1, value1, field2, value2 ...
+redis.call('del', KEYS[1])
+redis.call('hset', KEYS[1], unpack(ARGV, 2))
+if tonumber(ARGV[1]) > 0 then
+    redis.call('expire', KEYS[1], ARGV[1])
+end
+return 1
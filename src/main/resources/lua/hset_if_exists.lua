@@ -0,0 +1,11 @@
+-- key存在时才更新部分字段，不存在说明缓存还没有加载，不能写入只有部分字段的hash
+-- KEYS[1]: key, ARGV: field1, value1, field2, value2 ...
+if (redis.call('exists', KEYS[1]) == 0) then
+    return 0
+end
+-- 空值标记说明数据库中不存在，不更新
+if (redis.call('hexists', KEYS[1], '_null') == 1) then
+    return 0
+end
+redis.call('hset', KEYS[1], unpack(ARGV))
+return 1
@@ -0,0 +1,35 @@
+-- 令牌桶限流，桶保存为hash：tokens 剩余令牌数，ts 上次取令牌的时间
+-- 1.参数列表
+local key = KEYS[1]
+-- 1.1.每毫秒生成的令牌数
+local rate = tonumber(ARGV[1])
+-- 1.2.桶容量
+local capacity = tonumber(ARGV[2])
+-- 1.3.当前时间，毫秒
+local now = tonumber(ARGV[3])
+
+-- 2.按时间补充令牌，桶不存在时是满的
+local bucket = redis.call('hmget', key, 'tokens', 'ts')
+local tokens = tonumber(bucket[1])
+local ts = tonumber(bucket[2])
+if(tokens == nil) then
+    tokens = capacity
+    ts = now
+end
+if(now > ts) then
+    tokens = math.min(capacity, tokens + (now - ts) * rate)
+    ts = now
+end
+
+-- 3.取一个令牌
+local allowed = 0
+if(tokens >= 1) then
+    tokens = tokens - 1
+    allowed = 1
+end
+
+-- 4.保存，lua数字转成redis参数时会截断小数，先转成字符串
+redis.call('hmset', key, 'tokens', tostring(tokens), 'ts', tostring(ts))
+-- 5.桶补满需要的时间之后没有请求，桶和新建的一样，直接过期
+redis.call('pexpire', key, math.ceil(capacity / rate) + 1000)
+return allowed
@@ -0,0 +1,92 @@
+-- 多个分片时所有key带相同的hash tag，在同一个slot，见SeckillSegments
+-- 1.参数列表
+-- 1.1.优惠券id
+local voucherId = ARGV[1]
+-- 1.2.用户id
+local userId = ARGV[2]
+-- 1.3.订单id的时间戳部分
+local timestamp = tonumber(ARGV[3])
+-- 1.4.订单id序列号的偏移量（分片序号 << 24），不同分片的序列号key各自自增
+local idOffset = tonumber(ARGV[4])
+-- 1.5.模式
+-- 0：只有一段；1：用户所在分段，库存不足时占住用户，由调用方去其他分段扣库存；
+-- 2：其他分段，用户已经在模式1中记录到自己分段的订单集合，只扣库存（只传前3个key，不判断时间和一人一单）
+local mode = ARGV[5]
+
+-- 生成订单id，和RedisIdWorker相同：时间戳 << 32 | 序列号
+-- lua数字是double，超过2^53会丢失精度，2^32 = 42949 * 100000 + 67296，分成高低两部分按十进制拼接
+local function nextOrderId(idKey, timestamp)
+    local count = redis.call('incr', idKey) + idOffset
+    local high = timestamp * 42949
+    local low = timestamp * 67296 + count
+    high = high + math.floor(low / 100000)
+    low = low % 100000
+    if(high == 0) then
+        return tostring(low)
+    end
+    return string.format('%.0f%05d', high, low)
+end
+
+-- 2.数据key
+-- 2.1.库存key（用户所在分段，模式2时是其他分段）
+local stockKey = KEYS[1]
+-- 2.2.订单stream，和库存在同一个分片
+local streamKey = KEYS[2]
+-- 2.3.订单id序列号的key，扣库存成功后才自增
+local idKey = KEYS[3]
+
+-- 扣库存并发送消息到队列中，XADD stream.orders:{k} * k1 v1 k2 v2 ...
+local function deduct()
+    redis.call('incrby', stockKey, -1)
+    redis.call('xadd', streamKey, '*', 'userId', userId, 'voucherId', voucherId, 'id', nextOrderId(idKey, timestamp))
+end
+
+if(mode == '2') then
+    if(tonumber(redis.call('get', stockKey)) <= 0) then
+        return 1
+    end
+    deduct()
+    return 0
+end
+-- 2.4.订单key（用户所在分段）
+local orderKey = KEYS[4]
+-- 2.5.秒杀券元数据key（用户所在分片的副本），保存秒杀开始和结束时间
+local metaKey = KEYS[5]
+
+-- 3.脚本业务
+-- 3.0.判断秒杀时间，没有元数据时不判断；使用redis服务器的时间，各实例的时钟有偏差也不会在时间外卖出
+local time = redis.call('time')
+local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+local window = redis.call('hmget', metaKey, 'beginTime', 'endTime')
+if(window[1] and now < tonumber(window[1])) then
+    -- 尚未开始，返回4
+    return 4
+end
+if(window[2] and now > tonumber(window[2])) then
+    -- 已经结束，返回5
+    return 5
+end
+-- 3.1.判断库存是否充足 get stockKey
+if(tonumber(redis.call('get', stockKey)) <= 0) then
+    if(mode ~= '1') then
+        -- 3.2.库存不足，返回1
+        return 1
+    end
+    -- 3.3.分段库存不足，先判断用户是否下单
+    if(redis.call('sismember', orderKey, userId) == 1) then
+        return 2
+    end
+    -- 3.4.占住用户，返回3，由调用方去其他分段扣库存，都没有库存时再删除
+    redis.call('sadd', orderKey, userId)
+    return 3
+end
+-- 3.2.判断用户是否下单 SISMEMBER orderKey userId
+if(redis.call('sismember', orderKey, userId) == 1) then
+    -- 3.3.存在，说明是重复下单，返回2
+    return 2
+end
+-- 3.4.下单（保存用户）sadd orderKey userId
+redis.call('sadd', orderKey, userId)
+-- 3.5.扣库存，发送消息到队列中
+deduct()
+return 0
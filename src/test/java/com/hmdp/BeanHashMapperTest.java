@@ -0,0 +1,42 @@
+package com.hmdp;
+
+import com.hmdp.entity.Shop;
+import com.hmdp.utils.BeanHashMapper;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BeanHashMapperTest {
+
+    @Test
+    void testRoundTrip() {
+        Shop shop = new Shop().setId(1L).setName("103茶餐厅").setTypeId(1L).setX(120.149192).setY(30.316078)
+                .setAvgPrice(80L).setSold(4215).setScore(37).setCreateTime(LocalDateTime.of(2021, 12, 22, 18, 10, 39, 123));
+        Map<String, String> hash = BeanHashMapper.toHash(shop);
+        assertEquals("103茶餐厅", hash.get("name"));
+        // null字段不写入
+        assertFalse(hash.containsKey("openHours"));
+        assertFalse(hash.containsKey("distance"));
+
+        hash.put("_expireTime", LocalDateTime.now().toString());
+        assertEquals(shop, BeanHashMapper.fromHash(hash, Shop.class));
+    }
+
+    @Test
+    void testPartialFields() {
+        Map<String, String> hash = new HashMap<>();
+        hash.put("id", "2");
+        hash.put("sold", "100");
+        hash.put("address", null);
+        hash.put("unknown", "x");
+        Shop shop = BeanHashMapper.fromHash(hash, Shop.class);
+        assertEquals(2L, shop.getId());
+        assertEquals(100, shop.getSold());
+        assertNull(shop.getAddress());
+        assertNull(shop.getName());
+    }
+}
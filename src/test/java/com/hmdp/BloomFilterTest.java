@@ -0,0 +1,48 @@
+package com.hmdp;
+
+import com.hmdp.utils.BloomFilter;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BloomFilterTest {
+
+    @Test
+    void testNoFalseNegativeAndFpp() {
+        BloomFilter filter = new BloomFilter(10000, 0.01);
+        for (long i = 1; i <= 10000; i++) {
+            filter.put(i);
+        }
+        for (long i = 1; i <= 10000; i++) {
+            assertTrue(filter.mightContain(i));
+        }
+        int falsePositives = 0;
+        for (long i = 10001; i <= 110000; i++) {
+            if (filter.mightContain(i)) {
+                falsePositives++;
+            }
+        }
+        // 配置1%的误判率，留一些余量
+        assertTrue(falsePositives < 2000, "falsePositives = " + falsePositives);
+        System.out.println("falsePositives = " + falsePositives + ", estimatedFpp = " + filter.expectedFpp());
+    }
+
+    @Test
+    void testRedisBytesRoundTrip() {
+        BloomFilter filter = new BloomFilter(1000, 0.01);
+        for (long i = 1; i <= 1000; i++) {
+            filter.put(i);
+        }
+        byte[] bytes = filter.toRedisBytes();
+        // redis的SETBIT offset 对应第 offset/8 个字节从高位开始的第 offset%8 位
+        long offset = filter.offsets(1L)[0];
+        assertNotEquals(0, bytes[(int) (offset >>> 3)] & (0x80 >>> (offset & 7)));
+
+        BloomFilter loaded = new BloomFilter(1000, 0.01);
+        loaded.loadRedisBytes(bytes);
+        assertEquals(filter.bitCount(), loaded.bitCount());
+        for (long i = 1; i <= 1000; i++) {
+            assertTrue(loaded.mightContain(i));
+        }
+    }
+}
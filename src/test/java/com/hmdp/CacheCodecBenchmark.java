@@ -0,0 +1,108 @@
+package com.hmdp;
+
+import com.hmdp.dto.UserDTO;
+import com.hmdp.entity.Blog;
+import com.hmdp.entity.Shop;
+import com.hmdp.utils.BinaryCacheCodec;
+import com.hmdp.utils.CacheCodec;
+import com.hmdp.utils.JsonCacheCodec;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 对比JSON和二进制编码在逻辑过期数据上的编解码耗时和内存分配
+ * 运行：直接执行main方法（需要先 mvn test-compile 生成JMH代码）
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CacheCodecBenchmark {
+
+    @Param({"json", "binary"})
+    private String codecName;
+
+    private CacheCodec codec;
+
+    private Shop shop;
+    private Blog blog;
+    private UserDTO user;
+
+    private byte[] shopBytes;
+    private byte[] blogBytes;
+    private byte[] userBytes;
+
+    private LocalDateTime expireTime;
+
+    @Setup
+    public void setUp() {
+        codec = JsonCacheCodec.NAME.equals(codecName) ? new JsonCacheCodec() : new BinaryCacheCodec();
+        expireTime = LocalDateTime.now().plusMinutes(30);
+
+        shop = new Shop().setId(1L).setName("103茶餐厅").setTypeId(1L)
+                .setImages("https://qcloud.dpfile.com/pc/jiclIsCKmOI2arxKN1Uf0Hx3PucIJH8q0QSz-Z8llzcN56-_QiKuOvyio1OOxsRtFoXqu0G3iT2T27qat3WhLVEuLYk00OmSS1IdNpm8K8sG4JN9RIm2mTKcbLtc2o2vfCF2ubeXzk49OsGrXt_KYDCngOyCwZK-s3fqawWswzk.jpg,https://qcloud.dpfile.com/pc/IOf6VX3qaBgFXFVgp75w-KKJmWZjFc8GXDU8g9bQC6YGCpAmG00QbfT4vCCBj7njuzFvxlbkWx5uwqY2qcjixFEuLYk00OmSS1IdNpm8K8sG4JN9RIm2mTKcbLtc2o2vmIU_8ZGOT1OjpJmLxG6urQ.jpg")
+                .setArea("大关").setAddress("金华路锦昌文华苑29号")
+                .setX(120.149192).setY(30.316078).setAvgPrice(80L)
+                .setSold(4215).setComments(3035).setScore(37).setOpenHours("10:00-22:00")
+                .setCreateTime(LocalDateTime.now()).setUpdateTime(LocalDateTime.now());
+
+        blog = new Blog().setId(4L).setShopId(4L).setUserId(2L).setTitle("无尽浪漫的夜晚丨在万花丛中摇晃着红酒杯🍷品战斧牛排🥩")
+                .setImages("/imgs/blogs/7/14/4771fefb-1a87-4252-816c-9f7ec41ffa4a.jpg,/imgs/blogs/4/10/2f07e3c9-ddce-482d-9ea7-c21450f8d7cd.jpg")
+                .setContent("生活就是一半烟火·一半诗意<br/>手执烟火谋生活·心怀诗意以谋爱·<br/>当然<br/>男朋友给不了的浪漫要学会自己给🍒<br/>无法重来的一生·尽量快乐.<br/><br/>🏰「小筑里·神秘浪漫花园餐厅」🏰<br/><br/>💯这是一家最最最美花园的西餐厅·到处都是花餐桌上是花前台是花  美好无处不在")
+                .setLiked(1).setComments(104).setCreateTime(LocalDateTime.now()).setUpdateTime(LocalDateTime.now());
+
+        user = new UserDTO();
+        user.setId(1010L);
+        user.setNickName("可可今天不吃肉");
+        user.setIcon("/imgs/icons/kkjtbcr.jpg");
+
+        shopBytes = codec.encodeWithLogicalExpire(shop, expireTime, 20L);
+        blogBytes = codec.encodeWithLogicalExpire(blog, expireTime, 20L);
+        userBytes = codec.encodeWithLogicalExpire(user, expireTime, 20L);
+    }
+
+    @Benchmark
+    public byte[] encodeShop() {
+        return codec.encodeWithLogicalExpire(shop, expireTime, 20L);
+    }
+
+    @Benchmark
+    public Object decodeShop() {
+        return codec.decodeWithLogicalExpire(shopBytes, Shop.class);
+    }
+
+    @Benchmark
+    public byte[] encodeBlog() {
+        return codec.encodeWithLogicalExpire(blog, expireTime, 20L);
+    }
+
+    @Benchmark
+    public Object decodeBlog() {
+        return codec.decodeWithLogicalExpire(blogBytes, Blog.class);
+    }
+
+    @Benchmark
+    public byte[] encodeUser() {
+        return codec.encodeWithLogicalExpire(user, expireTime, 20L);
+    }
+
+    @Benchmark
+    public Object decodeUser() {
+        return codec.decodeWithLogicalExpire(userBytes, UserDTO.class);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(CacheCodecBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -0,0 +1,57 @@
+package com.hmdp;
+
+import com.hmdp.entity.Shop;
+import com.hmdp.utils.BinaryCacheCodec;
+import com.hmdp.utils.JsonCacheCodec;
+import com.hmdp.utils.RedisData;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CacheCodecTest {
+
+    @Test
+    void testBinaryLogicalExpireRoundTrip() {
+        BinaryCacheCodec codec = new BinaryCacheCodec();
+        Shop shop = new Shop().setId(1L).setName("103茶餐厅").setX(120.149192).setScore(37)
+                .setCreateTime(LocalDateTime.of(2021, 12, 22, 18, 10, 39, 123456789));
+        LocalDateTime expireTime = LocalDateTime.now().plusMinutes(30).truncatedTo(ChronoUnit.MILLIS);
+
+        byte[] bytes = codec.encodeWithLogicalExpire(shop, expireTime, 35L);
+        assertTrue(codec.canDecode(bytes));
+        assertFalse(new JsonCacheCodec().canDecode(bytes));
+
+        RedisData redisData = codec.decodeWithLogicalExpire(bytes, Shop.class);
+        assertEquals(expireTime, redisData.getExpireTime());
+        assertEquals(shop, redisData.getData());
+        assertEquals(35L, redisData.getRebuildCost());
+
+        RedisData withoutCost = codec.decodeWithLogicalExpire(
+                codec.encodeWithLogicalExpire(shop, expireTime, null), Shop.class);
+        assertNull(withoutCost.getRebuildCost());
+    }
+
+    @Test
+    void testNullRoundTrip() {
+        BinaryCacheCodec binary = new BinaryCacheCodec();
+        assertNull(binary.decode(binary.encode(null), Shop.class));
+
+        LocalDateTime expireTime = LocalDateTime.now().plusMinutes(30).truncatedTo(ChronoUnit.MILLIS);
+        RedisData redisData = binary.decodeWithLogicalExpire(
+                binary.encodeWithLogicalExpire(null, expireTime, 35L), Shop.class);
+        assertEquals(expireTime, redisData.getExpireTime());
+        assertNull(redisData.getData());
+
+        JsonCacheCodec json = new JsonCacheCodec();
+        assertNull(json.decodeWithLogicalExpire(json.encodeWithLogicalExpire(null, expireTime, null), Shop.class).getData());
+    }
+
+    @Test
+    void testJsonIsNotDecodedAsBinary() {
+        byte[] bytes = new JsonCacheCodec().encode(new Shop().setId(1L));
+        assertFalse(new BinaryCacheCodec().canDecode(bytes));
+    }
+}
@@ -0,0 +1,49 @@
+package com.hmdp;
+
+import com.hmdp.config.CacheProperties;
+import com.hmdp.utils.CacheCompressor;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CacheCompressorTest {
+
+    @Test
+    void testCompressAboveThreshold() {
+        CacheCompressor compressor = new CacheCompressor(new CacheProperties(), new SimpleMeterRegistry());
+        StringBuilder sb = new StringBuilder("{\"content\":\"");
+        for (int i = 0; i < 200; i++) {
+            sb.append("生活就是一半烟火·一半诗意<br/>");
+        }
+        byte[] raw = sb.append("\"}").toString().getBytes(StandardCharsets.UTF_8);
+
+        byte[] compressed = compressor.compress("cache:blog:1", raw);
+        assertTrue(CacheCompressor.isCompressed(compressed));
+        assertTrue(compressed.length < raw.length / 5);
+        assertArrayEquals(raw, compressor.decompress("cache:blog:1", compressed));
+
+        Map<String, Object> stats = compressor.stats().get("cache:blog:");
+        assertEquals(1L, stats.get("compressed"));
+        assertEquals((long) raw.length, stats.get("rawBytes"));
+    }
+
+    @Test
+    void testSmallAndIncompressibleValuesAreKept() {
+        CacheCompressor compressor = new CacheCompressor(new CacheProperties(), new SimpleMeterRegistry());
+        byte[] small = "{\"id\":1}".getBytes(StandardCharsets.UTF_8);
+        assertSame(small, compressor.compress("cache:shop:1", small));
+        // 未压缩的数据直接返回
+        assertSame(small, compressor.decompress("cache:shop:1", small));
+
+        byte[] random = new byte[4096];
+        ThreadLocalRandom.current().nextBytes(random);
+        random[0] = '{';
+        assertSame(random, compressor.compress("cache:shop:2", random));
+        assertEquals(1L, compressor.stats().get("cache:shop:").get("incompressible"));
+    }
+}
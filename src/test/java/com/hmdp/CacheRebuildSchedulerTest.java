@@ -0,0 +1,78 @@
+package com.hmdp;
+
+import com.hmdp.config.CacheProperties;
+import com.hmdp.utils.CacheRebuildScheduler;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CacheRebuildSchedulerTest {
+
+    @Test
+    void testSameKeyIsDeduplicatedAndQueueIsBounded() throws Exception {
+        CacheProperties properties = new CacheProperties();
+        properties.getRebuild().setThreads(1);
+        properties.getRebuild().setQueueCapacity(1);
+        CacheRebuildScheduler scheduler = new CacheRebuildScheduler(properties, new SimpleMeterRegistry());
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger runs = new AtomicInteger();
+
+        // 第一个任务占住唯一的线程
+        assertTrue(scheduler.submit("k1", () -> true, () -> {
+            runs.incrementAndGet();
+            started.countDown();
+            await(release);
+        }));
+        started.await();
+        // 同一个key合并，第二个key进入队列，第三个key队列已满被拒绝
+        assertFalse(scheduler.submit("k1", () -> true, runs::incrementAndGet));
+        assertTrue(scheduler.submit("k2", () -> true, runs::incrementAndGet));
+        assertFalse(scheduler.submit("k3", () -> true, runs::incrementAndGet));
+        release.countDown();
+
+        waitUntil(() -> scheduler.stats().get("pending") == 0);
+        assertEquals(2, runs.get());
+        assertEquals(1L, scheduler.stats().get("deduplicated"));
+        assertEquals(1L, scheduler.stats().get("rejected"));
+        scheduler.shutdown();
+    }
+
+    @Test
+    void testRefreshedKeyIsSkippedAndFailureIsCounted() throws Exception {
+        CacheRebuildScheduler scheduler = new CacheRebuildScheduler(new CacheProperties(), new SimpleMeterRegistry());
+        AtomicInteger runs = new AtomicInteger();
+
+        scheduler.submit("fresh", () -> false, runs::incrementAndGet);
+        scheduler.submit("broken", () -> true, () -> {
+            throw new IllegalStateException("db down");
+        });
+
+        waitUntil(() -> scheduler.stats().get("skipped") + scheduler.stats().get("failed") == 2);
+        assertEquals(0, runs.get());
+        assertEquals(1L, scheduler.stats().get("skipped"));
+        assertEquals(1L, scheduler.stats().get("failed"));
+        scheduler.shutdown();
+    }
+
+    private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.hmdp;
+
+import com.hmdp.config.CacheProperties;
+import com.hmdp.utils.CacheTtlPolicy;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CacheTtlPolicyTest {
+
+    @Test
+    void testJitterStaysInRange() {
+        CacheProperties properties = new CacheProperties();
+        properties.getTtl().getAdaptive().setEnabled(false);
+        CacheTtlPolicy policy = new CacheTtlPolicy(properties);
+        Set<Long> distinct = new HashSet<>();
+        for (int i = 0; i < 1000; i++) {
+            long ttl = policy.ttlMillis("cache:shop:1", 30L, TimeUnit.MINUTES);
+            assertTrue(ttl >= TimeUnit.MINUTES.toMillis(27) && ttl <= TimeUnit.MINUTES.toMillis(33), "ttl = " + ttl);
+            distinct.add(ttl);
+        }
+        assertTrue(distinct.size() > 100);
+    }
+
+    @Test
+    void testAdaptiveByAccessCount() {
+        CacheProperties properties = new CacheProperties();
+        properties.getTtl().setJitter(0);
+        CacheTtlPolicy policy = new CacheTtlPolicy(properties);
+        for (int i = 0; i < 100; i++) {
+            policy.recordAccess("cache:shop:1");
+        }
+        for (int i = 0; i < 10; i++) {
+            policy.recordAccess("cache:shop:2");
+        }
+        long base = TimeUnit.MINUTES.toMillis(30);
+        assertEquals(base * 2, policy.ttlMillis("cache:shop:1", 30L, TimeUnit.MINUTES));
+        assertEquals(base, policy.ttlMillis("cache:shop:2", 30L, TimeUnit.MINUTES));
+        // 启动后不满一个窗口，没有访问记录的key也不缩短
+        assertEquals(base, policy.ttlMillis("cache:shop:3", 30L, TimeUnit.MINUTES));
+        policy.shutdown();
+    }
+
+    @Test
+    void testColdFactorNeedsFullWindow() throws InterruptedException {
+        CacheProperties properties = new CacheProperties();
+        properties.getTtl().setJitter(0);
+        properties.getTtl().getAdaptive().setWindow(Duration.ofMillis(300));
+        CacheTtlPolicy policy = new CacheTtlPolicy(properties);
+        long base = TimeUnit.MINUTES.toMillis(30);
+        policy.recordAccess("cache:shop:1");
+        assertEquals(base, policy.ttlMillis("cache:shop:1", 30L, TimeUnit.MINUTES));
+
+        Thread.sleep(400);
+        // 满一个窗口后，很少访问的key缩短，刚第一次访问的新key不缩短
+        assertEquals(base / 2, policy.ttlMillis("cache:shop:1", 30L, TimeUnit.MINUTES));
+        assertEquals(base / 2, policy.ttlMillis("cache:shop:2", 30L, TimeUnit.MINUTES));
+        policy.recordAccess("cache:shop:3");
+        assertEquals(base, policy.ttlMillis("cache:shop:3", 30L, TimeUnit.MINUTES));
+        policy.shutdown();
+    }
+}
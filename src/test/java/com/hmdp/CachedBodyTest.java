@@ -0,0 +1,26 @@
+package com.hmdp;
+
+import com.hmdp.utils.CachedBody;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CachedBodyTest {
+
+    @Test
+    void testReplace() {
+        byte[] json = "{\"success\":true,\"data\":{\"id\":4,\"name\":\"可可\",\"isLike\":false,\"content\":\"浪漫\"}}"
+                .getBytes(StandardCharsets.UTF_8);
+        CachedBody body = new CachedBody("abc", json);
+
+        CachedBody liked = body.replace("\"isLike\":false", "\"isLike\":true", "liked");
+        assertEquals("{\"success\":true,\"data\":{\"id\":4,\"name\":\"可可\",\"isLike\":true,\"content\":\"浪漫\"}}",
+                new String(liked.getBody(), StandardCharsets.UTF_8));
+        assertEquals("abc-liked", liked.getEtag());
+
+        // 找不到时返回原对象
+        assertSame(body, body.replace("\"missing\":false", "\"missing\":true", "x"));
+    }
+}
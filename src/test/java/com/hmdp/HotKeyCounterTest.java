@@ -0,0 +1,41 @@
+package com.hmdp;
+
+import com.hmdp.utils.HotKeyCounter;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HotKeyCounterTest {
+
+    @Test
+    void testHotKeyIsDetectedAmongColdKeys() {
+        HotKeyCounter counter = new HotKeyCounter(5, 4, 1024, 500, 3);
+        for (int i = 0; i < 10000; i++) {
+            counter.add("cache:shop:" + i, 1);
+        }
+        for (int i = 0; i < 1000; i++) {
+            counter.add("cache:shop:1", 1);
+            counter.add("cache:shop:type", 1);
+        }
+        // 估算值只会偏大
+        assertTrue(counter.estimate("cache:shop:1") >= 1001);
+
+        Map<String, Long> hot = counter.rotate();
+        assertEquals(2, hot.size());
+        assertTrue(hot.containsKey("cache:shop:1"));
+        assertTrue(hot.containsKey("cache:shop:type"));
+    }
+
+    @Test
+    void testKeyCoolsDownAfterWindow() {
+        HotKeyCounter counter = new HotKeyCounter(3, 4, 1024, 100, 10);
+        counter.add("seckill:stock:1", 200);
+        assertTrue(counter.rotate().containsKey("seckill:stock:1"));
+        assertTrue(counter.rotate().containsKey("seckill:stock:1"));
+        // 三个桶都滑过之后计数清零
+        assertTrue(counter.rotate().isEmpty());
+        assertEquals(0, counter.estimate("seckill:stock:1"));
+    }
+}
@@ -0,0 +1,40 @@
+package com.hmdp;
+
+import com.hmdp.entity.SeckillVoucher;
+import com.hmdp.utils.SeckillMeta;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SeckillMetaTest {
+
+    @Test
+    void testRoundTripAndWindow() {
+        LocalDateTime begin = LocalDateTime.of(2022, 1, 1, 10, 0);
+        SeckillVoucher voucher = new SeckillVoucher().setVoucherId(1L)
+                .setBeginTime(begin).setEndTime(begin.plusHours(1));
+        SeckillMeta meta = SeckillMeta.of(voucher, 4);
+
+        SeckillMeta copy = SeckillMeta.fromHash(new HashMap<>(meta.toHash()));
+        assertNotNull(copy);
+        assertEquals(4, copy.getSegments());
+        assertEquals(meta.getBeginTime(), copy.getBeginTime());
+        assertEquals(meta.getBeginTime() + 3600_000, copy.getEndTime());
+
+        assertTrue(copy.notStarted(copy.getBeginTime() - 1));
+        assertFalse(copy.notStarted(copy.getBeginTime()));
+        assertFalse(copy.ended(copy.getEndTime()));
+        assertTrue(copy.ended(copy.getEndTime() + 1));
+    }
+
+    @Test
+    void testMissing() {
+        assertNull(SeckillMeta.fromHash(null));
+        Map<Object, Object> empty = new HashMap<>();
+        assertNull(SeckillMeta.fromHash(empty));
+    }
+}
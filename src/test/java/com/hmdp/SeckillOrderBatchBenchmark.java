@@ -0,0 +1,86 @@
+package com.hmdp;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.hmdp.config.SeckillProperties;
+import com.hmdp.entity.SeckillVoucher;
+import com.hmdp.entity.VoucherOrder;
+import com.hmdp.service.ISeckillVoucherService;
+import com.hmdp.service.IVoucherOrderService;
+import com.hmdp.utils.RedisIdWorker;
+import com.hmdp.utils.SeckillSegments;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 测量stream.orders消费者在不同批量大小下的下单吞吐（订单/秒）
+ * 需要本地mysql和redis（使用application.yaml中的配置），每轮临时创建一个库存为ORDER_COUNT的秒杀券，
+ * 直接向秒杀券所在分片的订单stream（stream.orders或stream.orders:{k}）写入ORDER_COUNT条消息，等待全部落库后输出耗时，结束后删除订单和秒杀券
+ * 运行：直接执行main方法，-Dseckill.orders 修改每轮订单数
+ */
+public class SeckillOrderBatchBenchmark {
+
+    private static final int ORDER_COUNT = Integer.getInteger("seckill.orders", 20_000);
+    private static final int[] BATCH_SIZES = {1, 16, 128};
+    private static final long BENCH_VOUCHER_ID = 900_000_000L;
+    private static final long BENCH_USER_ID = 900_000_000L;
+
+    public static void main(String[] args) throws InterruptedException {
+        try (ConfigurableApplicationContext context = SpringApplication.run(HmDianPingApplication.class, args)) {
+            SeckillProperties seckillProperties = context.getBean(SeckillProperties.class);
+            ISeckillVoucherService seckillVoucherService = context.getBean(ISeckillVoucherService.class);
+            IVoucherOrderService voucherOrderService = context.getBean(IVoucherOrderService.class);
+            StringRedisTemplate redisTemplate = context.getBean(StringRedisTemplate.class);
+            RedisIdWorker redisIdWorker = context.getBean(RedisIdWorker.class);
+
+            for (int i = 0; i < BATCH_SIZES.length; i++) {
+                int batchSize = BATCH_SIZES[i];
+                long voucherId = BENCH_VOUCHER_ID + i;
+                // 1.准备秒杀券，消费者下一次读取时使用新的批量大小
+                seckillVoucherService.save(new SeckillVoucher().setVoucherId(voucherId).setStock(ORDER_COUNT)
+                        .setBeginTime(LocalDateTime.now()).setEndTime(LocalDateTime.now().plusDays(1)));
+                seckillProperties.setBatchSize(batchSize);
+                try {
+                    // 2.pipeline写入消息，每个用户一单
+                    int streams = seckillProperties.getStreams();
+                    String stream = SeckillSegments.streamKey(SeckillSegments.shard(voucherId, 0, streams), streams);
+                    long[] orderIds = new long[ORDER_COUNT];
+                    for (int n = 0; n < ORDER_COUNT; n++) {
+                        orderIds[n] = redisIdWorker.nextId("order");
+                    }
+                    long begin = System.nanoTime();
+                    redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                        StringRedisConnection conn = (StringRedisConnection) connection;
+                        for (int n = 0; n < ORDER_COUNT; n++) {
+                            Map<String, String> body = new HashMap<>(4);
+                            body.put("id", String.valueOf(orderIds[n]));
+                            body.put("userId", String.valueOf(BENCH_USER_ID + n));
+                            body.put("voucherId", String.valueOf(voucherId));
+                            conn.xAdd(stream, body);
+                        }
+                        return null;
+                    });
+                    // 3.等待全部落库
+                    int count;
+                    do {
+                        Thread.sleep(50);
+                        count = voucherOrderService.query().eq("voucher_id", voucherId).count();
+                    } while (count < ORDER_COUNT);
+                    double seconds = (System.nanoTime() - begin) / 1e9;
+                    System.out.printf("batch-size=%d, %d个订单, 耗时%.2fs, %.0f订单/秒%n",
+                            batchSize, ORDER_COUNT, seconds, ORDER_COUNT / seconds);
+                } finally {
+                    // 4.清理
+                    voucherOrderService.remove(new QueryWrapper<VoucherOrder>().eq("voucher_id", voucherId));
+                    seckillVoucherService.removeById(voucherId);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.hmdp;
+
+import com.hmdp.utils.SeckillSegments;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SeckillSegmentsTest {
+
+    @Test
+    void testSplitKeepsTotal() {
+        assertArrayEquals(new int[]{26, 25, 25, 25}, SeckillSegments.split(101, 4));
+        assertEquals(3, Arrays.stream(SeckillSegments.split(3, 3)).sum());
+        // 库存少于配置的段数时每段至少1个
+        assertEquals(3, SeckillSegments.segmentsOf(3, 8));
+        assertEquals(1, SeckillSegments.segmentsOf(0, 8));
+    }
+
+    @Test
+    void testKeys() {
+        // 只有1个stream时和分片之前的key相同
+        assertEquals("seckill:stock:7", SeckillSegments.stockKey(7L, 0, 1, 1));
+        assertEquals("seckill:order:7", SeckillSegments.orderKey(7L, 0, 1, 1));
+        assertEquals("seckill:stock:7:2", SeckillSegments.stockKey(7L, 2, 4, 1));
+        assertEquals("seckill:meta:7", SeckillSegments.metaKey(7L, 0, 1));
+        assertEquals("stream.orders", SeckillSegments.streamKey(0, 1));
+        assertEquals(SeckillSegments.legacyStreamKey(), SeckillSegments.streamKey(0, 1));
+        assertEquals("stream.orders.dlq", SeckillSegments.deadLetterKeyOf("stream.orders"));
+        assertEquals("order", SeckillSegments.idKeyPrefix(0, 1));
+        assertEquals("seckill:stock:7:2:{1}", SeckillSegments.stockKey(7L, 2, 4, 4));
+        assertEquals("seckill:order:7:2:{1}", SeckillSegments.orderKey(7L, 2, 4, 4));
+        assertEquals(SeckillSegments.route(1010L, 4), SeckillSegments.route(1010L, 4));
+        assertEquals(2, SeckillSegments.route(1010L, 4));
+    }
+
+    @Test
+    void testShardKeysShareHashTag() {
+        // 分段2在分片 (7 + 2) % 4 = 1，脚本用到的key都带{1}
+        int shard = SeckillSegments.shard(7L, 2, 4);
+        assertEquals(1, shard);
+        assertEquals("stream.orders:{1}", SeckillSegments.streamKey(shard, 4));
+        assertEquals("stream.orders.dlq:{1}", SeckillSegments.deadLetterKeyOf(SeckillSegments.streamKey(shard, 4)));
+        assertEquals("seckill:meta:7:{1}", SeckillSegments.metaKey(7L, shard, 4));
+        assertEquals("order:{1}", SeckillSegments.idKeyPrefix(shard, 4));
+        // 不同分片的订单id序列号不重叠
+        assertEquals(0L, SeckillSegments.idOffset(0));
+        assertEquals(1L << 24, SeckillSegments.idOffset(1));
+    }
+}
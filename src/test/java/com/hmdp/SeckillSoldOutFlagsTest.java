@@ -0,0 +1,56 @@
+package com.hmdp;
+
+import com.hmdp.config.SeckillProperties;
+import com.hmdp.utils.SeckillSoldOutFlags;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SeckillSoldOutFlagsTest {
+
+    /**
+     * 只记录发布的消息，不连接redis
+     */
+    private final List<String> published = new ArrayList<>();
+
+    private final StringRedisTemplate redisTemplate = new StringRedisTemplate() {
+        @Override
+        public void convertAndSend(String channel, Object message) {
+            published.add(String.valueOf(message));
+        }
+    };
+
+    @Test
+    void testClearLocalDoesNotPublish() {
+        SeckillSoldOutFlags flags = new SeckillSoldOutFlags(redisTemplate, new SeckillProperties(),
+                new RedisMessageListenerContainer());
+        flags.markSoldOut(7L);
+        assertTrue(flags.isSoldOut(7L));
+        assertEquals(1, published.size());
+
+        flags.clearLocal(7L);
+        assertFalse(flags.isSoldOut(7L));
+        assertEquals(1, published.size());
+    }
+
+    @Test
+    void testRecheckThenClearLocal() {
+        SeckillProperties properties = new SeckillProperties();
+        properties.setSoldOutRecheck(Duration.ZERO);
+        SeckillSoldOutFlags flags = new SeckillSoldOutFlags(redisTemplate, properties, new RedisMessageListenerContainer());
+        flags.markSoldOut(7L);
+        // 超过recheck时间，放过一个请求去redis重新判断
+        assertFalse(flags.isSoldOut(7L));
+        // redis中已经有库存（补充库存的通知丢失），清除后所有请求都不再拒绝
+        flags.clearLocal(7L);
+        for (int i = 0; i < 10; i++) {
+            assertFalse(flags.isSoldOut(7L));
+        }
+    }
+}
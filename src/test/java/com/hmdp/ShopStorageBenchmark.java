@@ -0,0 +1,187 @@
+package com.hmdp;
+
+import com.hmdp.entity.Shop;
+import com.hmdp.utils.BeanHashMapper;
+import com.hmdp.utils.CacheCodec;
+import com.hmdp.utils.JsonCacheCodec;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 对比店铺整体编码保存（string）和按字段保存（hash）的内存占用和读取耗时
+ * 需要本地redis（-Dredis.host、-Dredis.port，默认127.0.0.1:6379），会写入 bench:shop:* 共20万个key，结束后删除
+ * 运行：直接执行main方法（需要先 mvn test-compile 生成JMH代码），内存占用在setup时按MEMORY USAGE采样输出
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ShopStorageBenchmark {
+
+    private static final int SHOP_COUNT = 100_000;
+    private static final int PAGE_SIZE = 10;
+    private static final String STRING_KEY = "bench:shop:string:";
+    private static final String HASH_KEY = "bench:shop:hash:";
+    private static final String[] LIST_FIELDS = {
+            "id", "name", "typeId", "images", "area", "address", "avgPrice", "sold", "comments", "score", "_expireTime"};
+
+    private LettuceConnectionFactory connectionFactory;
+    private StringRedisTemplate redisTemplate;
+    private final CacheCodec codec = new JsonCacheCodec();
+
+    @Setup
+    public void setUp() {
+        connectionFactory = new LettuceConnectionFactory(new RedisStandaloneConfiguration(
+                System.getProperty("redis.host", "127.0.0.1"), Integer.getInteger("redis.port", 6379)));
+        connectionFactory.afterPropertiesSet();
+        redisTemplate = new StringRedisTemplate(connectionFactory);
+        LocalDateTime expireTime = LocalDateTime.now().plusMinutes(30);
+        // 1.分批写入两种格式
+        for (int begin = 1; begin <= SHOP_COUNT; begin += 1000) {
+            int from = begin;
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection conn = (StringRedisConnection) connection;
+                for (long id = from; id < from + 1000 && id <= SHOP_COUNT; id++) {
+                    Shop shop = shop(id);
+                    connection.stringCommands().set((STRING_KEY + id).getBytes(StandardCharsets.UTF_8),
+                            codec.encodeWithLogicalExpire(shop, expireTime, 20L));
+                    Map<String, String> hash = BeanHashMapper.toHash(shop);
+                    hash.put("_expireTime", expireTime.toString());
+                    hash.put("_rebuildCost", "20");
+                    conn.hMSet(HASH_KEY + id, hash);
+                }
+                return null;
+            });
+        }
+        // 2.采样MEMORY USAGE估算总内存
+        System.out.printf("%n%d个店铺, string约%d KB, hash约%d KB%n", SHOP_COUNT,
+                estimateMemory(STRING_KEY) / 1024, estimateMemory(HASH_KEY) / 1024);
+    }
+
+    private long estimateMemory(String keyPrefix) {
+        int samples = 1000;
+        long total = redisTemplate.execute((RedisCallback<Long>) connection -> {
+            long sum = 0;
+            for (int i = 0; i < samples; i++) {
+                long id = ThreadLocalRandom.current().nextLong(1, SHOP_COUNT + 1);
+                Object usage = connection.execute("MEMORY", "USAGE".getBytes(StandardCharsets.UTF_8),
+                        (keyPrefix + id).getBytes(StandardCharsets.UTF_8));
+                sum += ((Number) usage).longValue();
+            }
+            return sum;
+        });
+        return total / samples * SHOP_COUNT;
+    }
+
+    @TearDown
+    public void tearDown() {
+        for (int begin = 1; begin <= SHOP_COUNT; begin += 1000) {
+            int from = begin;
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (long id = from; id < from + 1000 && id <= SHOP_COUNT; id++) {
+                    connection.keyCommands().del((STRING_KEY + id).getBytes(StandardCharsets.UTF_8),
+                            (HASH_KEY + id).getBytes(StandardCharsets.UTF_8));
+                }
+                return null;
+            });
+        }
+        connectionFactory.destroy();
+    }
+
+    @Benchmark
+    public Object getString() {
+        byte[] bytes = redisTemplate.execute((RedisCallback<byte[]>) connection ->
+                connection.stringCommands().get((STRING_KEY + randomId()).getBytes(StandardCharsets.UTF_8)));
+        return codec.decodeWithLogicalExpire(bytes, Shop.class);
+    }
+
+    @Benchmark
+    public Object getHash() {
+        Map<String, String> hash = redisTemplate.<String, String>opsForHash().entries(HASH_KEY + randomId());
+        return BeanHashMapper.fromHash(hash, Shop.class);
+    }
+
+    /**
+     * 列表页：一次MGET读取10个完整对象
+     */
+    @Benchmark
+    public Object listString() {
+        List<String> keys = new ArrayList<>(PAGE_SIZE);
+        long first = randomId();
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            keys.add(STRING_KEY + (first + i));
+        }
+        List<byte[]> values = redisTemplate.execute((RedisCallback<List<byte[]>>) connection ->
+                connection.stringCommands().mGet(keys.stream()
+                        .map(key -> key.getBytes(StandardCharsets.UTF_8)).toArray(byte[][]::new)));
+        List<Object> shops = new ArrayList<>(PAGE_SIZE);
+        for (byte[] bytes : values) {
+            shops.add(codec.decodeWithLogicalExpire(bytes, Shop.class));
+        }
+        return shops;
+    }
+
+    /**
+     * 列表页：一次pipeline对10个key执行HMGET，只读取列表需要的字段
+     */
+    @Benchmark
+    public Object listHash() {
+        long first = randomId();
+        List<Object> rows = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection conn = (StringRedisConnection) connection;
+            for (int i = 0; i < PAGE_SIZE; i++) {
+                conn.hMGet(HASH_KEY + (first + i), LIST_FIELDS);
+            }
+            return null;
+        });
+        List<Object> shops = new ArrayList<>(PAGE_SIZE);
+        for (Object row : rows) {
+            @SuppressWarnings("unchecked")
+            List<String> values = (List<String>) row;
+            Map<String, String> hash = new HashMap<>(LIST_FIELDS.length);
+            for (int i = 0; i < LIST_FIELDS.length; i++) {
+                hash.put(LIST_FIELDS[i], values.get(i));
+            }
+            shops.add(BeanHashMapper.fromHash(hash, Shop.class));
+        }
+        return shops;
+    }
+
+    private static long randomId() {
+        return ThreadLocalRandom.current().nextLong(1, SHOP_COUNT - PAGE_SIZE + 1);
+    }
+
+    private static Shop shop(long id) {
+        return new Shop().setId(id).setName("103茶餐厅" + id).setTypeId(id % 10 + 1)
+                .setImages("https://qcloud.dpfile.com/pc/jiclIsCKmOI2arxKN1Uf0Hx3PucIJH8q0QSz-Z8llzcN56-_QiKuOvyio1OOxsRtFoXqu0G3iT2T27qat3WhLVEuLYk00OmSS1IdNpm8K8sG4JN9RIm2mTKcbLtc2o2vfCF2ubeXzk49OsGrXt_KYDCngOyCwZK-s3fqawWswzk.jpg")
+                .setArea("大关").setAddress("金华路锦昌文华苑29号")
+                .setX(120.149192).setY(30.316078).setAvgPrice(80L)
+                .setSold(4215).setComments(3035).setScore(37).setOpenHours("10:00-22:00")
+                .setCreateTime(LocalDateTime.now()).setUpdateTime(LocalDateTime.now());
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ShopStorageBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
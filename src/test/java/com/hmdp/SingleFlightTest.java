@@ -0,0 +1,75 @@
+package com.hmdp;
+
+import com.hmdp.utils.SingleFlight;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SingleFlightTest {
+
+    @Test
+    void testConcurrentCallsShareOneLoad() throws Exception {
+        SingleFlight singleFlight = new SingleFlight();
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService es = Executors.newFixedThreadPool(8);
+        List<Future<String>> futures = new ArrayList<>();
+        futures.add(es.submit(() -> singleFlight.execute("k", () -> {
+            loads.incrementAndGet();
+            started.countDown();
+            await(release);
+            return "v";
+        }, 1, TimeUnit.SECONDS)));
+        started.await();
+        for (int i = 0; i < 7; i++) {
+            futures.add(es.submit(() -> singleFlight.execute("k", () -> {
+                loads.incrementAndGet();
+                return "other";
+            }, 1, TimeUnit.SECONDS)));
+        }
+        // 等待其余线程都进入等待状态
+        while (singleFlight.stats().get("shared") < 7) {
+            Thread.sleep(1);
+        }
+        release.countDown();
+        for (Future<String> future : futures) {
+            assertEquals("v", future.get());
+        }
+        assertEquals(1, loads.get());
+        es.shutdown();
+    }
+
+    @Test
+    void testWaitIsBounded() throws Exception {
+        SingleFlight singleFlight = new SingleFlight();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService es = Executors.newSingleThreadExecutor();
+        es.submit(() -> singleFlight.execute("k", () -> {
+            started.countDown();
+            await(release);
+            return "v";
+        }, 1, TimeUnit.SECONDS));
+        started.await();
+        assertThrows(TimeoutException.class,
+                () -> singleFlight.execute("k", () -> "other", 20, TimeUnit.MILLISECONDS));
+        assertEquals(1L, singleFlight.stats().get("timeouts"));
+        release.countDown();
+        es.shutdown();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.hmdp;
+
+import com.hmdp.utils.TokenBucket;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenBucketTest {
+
+    @Test
+    void testBurstThenRefill() {
+        TokenBucket bucket = new TokenBucket(2, 5, 0);
+        // 桶是满的，可以突发5个
+        for (int i = 0; i < 5; i++) {
+            assertTrue(bucket.tryAcquire(0));
+        }
+        assertFalse(bucket.tryAcquire(0));
+        // 每秒2个，250ms还不够1个
+        assertFalse(bucket.tryAcquire(250));
+        assertTrue(bucket.tryAcquire(500));
+        assertFalse(bucket.tryAcquire(500));
+        // 很久没有请求最多补到容量
+        for (int i = 0; i < 5; i++) {
+            assertTrue(bucket.tryAcquire(60_000));
+        }
+        assertFalse(bucket.tryAcquire(60_000));
+    }
+}
@@ -0,0 +1,116 @@
+package com.hmdp;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+
+/**
+ * 对比订单表已有100万、1000万条订单时两种写入方式的耗时
+ * 1.原来的方式：SELECT count(*) 判断一人一单（user_id、voucher_id上没有索引）后INSERT
+ * 2.唯一索引(user_id, voucher_id, seckill) + INSERT IGNORE，不需要先查询
+ * 需要本地mysql（-Ddb.url、-Ddb.username、-Ddb.password，默认和application.yaml相同），
+ * 会创建 bench_order_scan、bench_order_unique 两张表各写入1000万条，结束后删除
+ * 运行：直接执行main方法
+ */
+public class VoucherOrderPersistBenchmark {
+
+    private static final int[] ORDER_COUNTS = {1_000_000, 10_000_000};
+    private static final int SAMPLES = 2000;
+    private static final int BATCH = 10_000;
+    private static final int VOUCHERS = 1000;
+
+    private static final String COLUMNS = "(`id` bigint(20) NOT NULL, `user_id` bigint(20) UNSIGNED NOT NULL, "
+            + "`voucher_id` bigint(20) UNSIGNED NOT NULL, `seckill` tinyint(1) UNSIGNED NULL DEFAULT NULL, "
+            + "`pay_type` tinyint(1) UNSIGNED NOT NULL DEFAULT 1, `status` tinyint(1) UNSIGNED NOT NULL DEFAULT 1, "
+            + "`create_time` timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP, PRIMARY KEY (`id`)";
+
+    public static void main(String[] args) throws SQLException {
+        String url = System.getProperty("db.url", "jdbc:mysql://localhost:3306/hmredis?rewriteBatchedStatements=true");
+        try (Connection connection = DriverManager.getConnection(url,
+                System.getProperty("db.username", "root"), System.getProperty("db.password", "123456"));
+             Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE IF EXISTS bench_order_scan, bench_order_unique");
+            statement.execute("CREATE TABLE bench_order_scan " + COLUMNS + ") ENGINE = InnoDB");
+            statement.execute("CREATE TABLE bench_order_unique " + COLUMNS
+                    + ", UNIQUE INDEX `uk_user_voucher_seckill`(`user_id`, `voucher_id`, `seckill`)) ENGINE = InnoDB");
+            try {
+                long filled = 0;
+                for (int count : ORDER_COUNTS) {
+                    // 1.补充到指定数量
+                    fill(connection, "bench_order_scan", filled, count);
+                    fill(connection, "bench_order_unique", filled, count);
+                    filled = count;
+                    // 2.分别写入SAMPLES个新订单，一半是新用户，一半是已经买过的用户
+                    long[] scan = measure(connection, count, true);
+                    long[] unique = measure(connection, count, false);
+                    System.out.printf("%d条订单: SELECT+INSERT 平均%dus p99 %dus, INSERT IGNORE 平均%dus p99 %dus%n",
+                            count, scan[0], scan[1], unique[0], unique[1]);
+                }
+            } finally {
+                statement.execute("DROP TABLE IF EXISTS bench_order_scan, bench_order_unique");
+            }
+        }
+    }
+
+    private static void fill(Connection connection, String table, long from, long to) throws SQLException {
+        connection.setAutoCommit(false);
+        try (PreparedStatement insert = connection.prepareStatement(
+                "INSERT INTO " + table + " (id, user_id, voucher_id, seckill) VALUES (?, ?, ?, 1)")) {
+            for (long id = from + 1; id <= to; id++) {
+                insert.setLong(1, id);
+                insert.setLong(2, id);
+                insert.setLong(3, id % VOUCHERS + 1);
+                insert.addBatch();
+                if (id % BATCH == 0 || id == to) {
+                    insert.executeBatch();
+                    connection.commit();
+                }
+            }
+        } finally {
+            connection.setAutoCommit(true);
+        }
+    }
+
+    /**
+     * @return 平均耗时和p99，微秒
+     */
+    private static long[] measure(Connection connection, long count, boolean scan) throws SQLException {
+        String table = scan ? "bench_order_scan" : "bench_order_unique";
+        long[] costs = new long[SAMPLES];
+        try (PreparedStatement select = connection.prepareStatement(
+                "SELECT count(*) FROM " + table + " WHERE user_id = ? AND voucher_id = ?");
+             PreparedStatement insert = connection.prepareStatement(
+                     (scan ? "INSERT INTO " : "INSERT IGNORE INTO ") + table + " (id, user_id, voucher_id, seckill) VALUES (?, ?, ?, 1)")) {
+            for (int i = 0; i < SAMPLES; i++) {
+                // 和已有订单的id错开，每轮也不重复
+                long id = 1_000_000_000L + count + i;
+                // 奇数是已经存在的订单，偶数是新用户
+                long userId = i % 2 == 0 ? id : i + 1;
+                long voucherId = userId % VOUCHERS + 1;
+                long begin = System.nanoTime();
+                boolean exists = false;
+                if (scan) {
+                    select.setLong(1, userId);
+                    select.setLong(2, voucherId);
+                    try (ResultSet rs = select.executeQuery()) {
+                        rs.next();
+                        exists = rs.getInt(1) > 0;
+                    }
+                }
+                if (!exists) {
+                    insert.setLong(1, id);
+                    insert.setLong(2, userId);
+                    insert.setLong(3, voucherId);
+                    insert.executeUpdate();
+                }
+                costs[i] = (System.nanoTime() - begin) / 1000;
+            }
+        }
+        Arrays.sort(costs);
+        return new long[]{Arrays.stream(costs).sum() / SAMPLES, costs[(int) (SAMPLES * 0.99) - 1]};
+    }
+}